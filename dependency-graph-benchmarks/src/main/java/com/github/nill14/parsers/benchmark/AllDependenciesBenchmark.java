@@ -0,0 +1,84 @@
+package com.github.nill14.parsers.benchmark;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The transitive dependencies of the 100 topologically last modules, queried on a new dependency graph.
+ * The graph creation is measured as well, so the lazily built dependency sets
+ * and the eagerly built reachability index are compared fairly.
+ * <p>
+ * Both approaches need quadratic memory, hence the sizes are limited.
+ * The default dependency sets are built recursively, hence the bigger thread stack.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Xss64m"})
+public class AllDependenciesBenchmark {
+
+	@Param({"CHAIN", "FAN_OUT", "LAYERED", "DIAMOND"})
+	private GraphShape shape;
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	@Param({"false", "true"})
+	private boolean reachabilityIndex;
+
+	private DirectedGraph<IDependencyDescriptor<Integer>, GraphEdge<IDependencyDescriptor<Integer>>> graph;
+	private DependencyGraphOption[] options;
+
+	@Setup
+	public void setUp() throws UnsatisfiedDependencyException {
+		graph = DependencyGraphFactory.newGraph(shape.modules(size), Functions.<IDependencyDescriptor<Integer>>identity());
+		if (reachabilityIndex) {
+			options = new DependencyGraphOption[] { DependencyGraphOption.REACHABILITY_INDEX };
+		} else {
+			options = new DependencyGraphOption[0];
+		}
+	}
+
+	@Benchmark
+	public void allDependencies(Blackhole blackhole) throws UnsatisfiedDependencyException, CyclicGraphException {
+		ImmutableMap<IDependencyDescriptor<Integer>, Integer> priorityMap = ImmutableMap.of();
+		IDependencyGraph<IDependencyDescriptor<Integer>> dependencyGraph = 
+				DependencyGraphFactory.fromGraph(graph, priorityMap, options);
+		
+		List<IDependencyDescriptor<Integer>> order = dependencyGraph.getTopologicalOrder();
+		IDependencyDescriptor<Integer> root = order.get(0);
+		for (IDependencyDescriptor<Integer> module : order.subList(Math.max(0, order.size() - 100), order.size())) {
+			Set<IDependencyDescriptor<Integer>> dependencies = dependencyGraph.getAllDependencies(module);
+			blackhole.consume(dependencies.size());
+			blackhole.consume(dependencies.contains(root));
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.github.nill14.parsers.benchmark;
+
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.utils.GraphCycleDetector;
+import com.github.nill14.parsers.graph.utils.LongestPathTopoSorter;
+import com.github.nill14.parsers.graph.utils.TransitiveReduction;
+import com.google.common.base.Functions;
+
+/**
+ * The graph algorithms run on a prebuilt graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class GraphAlgorithmBenchmark {
+
+	@Param({"CHAIN", "FAN_OUT", "LAYERED", "DIAMOND"})
+	private GraphShape shape;
+
+	@Param({"1000", "100000", "1000000"})
+	private int size;
+
+	private DirectedGraph<IDependencyDescriptor<Integer>, GraphEdge<IDependencyDescriptor<Integer>>> graph;
+
+	@Setup
+	public void setUp() throws UnsatisfiedDependencyException {
+		graph = DependencyGraphFactory.newGraph(shape.modules(size), Functions.<IDependencyDescriptor<Integer>>identity());
+	}
+
+	@Benchmark
+	public LinkedHashMap<IDependencyDescriptor<Integer>, Integer> longestPathMap() throws CyclicGraphException {
+		return new LongestPathTopoSorter<>(graph).getLongestPathMap();
+	}
+
+	@Benchmark
+	public Collection<Deque<IDependencyDescriptor<Integer>>> cycleDetector() {
+		return new GraphCycleDetector<>(graph).getNontrivialCycles();
+	}
+
+	@Benchmark
+	public DirectedGraph<IDependencyDescriptor<Integer>, GraphEdge<IDependencyDescriptor<Integer>>> transitiveReduction()
+			throws CyclicGraphException {
+		return TransitiveReduction.reduce(graph);
+	}
+
+}
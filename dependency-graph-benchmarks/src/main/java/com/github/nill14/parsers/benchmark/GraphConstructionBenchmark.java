@@ -0,0 +1,79 @@
+package com.github.nill14.parsers.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.google.common.base.Functions;
+
+/**
+ * Graph construction from module descriptors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class GraphConstructionBenchmark {
+
+	@Param({"CHAIN", "FAN_OUT", "LAYERED", "DIAMOND"})
+	private GraphShape shape;
+
+	@Param({"1000", "100000", "1000000"})
+	private int size;
+
+	private Set<IDependencyDescriptor<Integer>> modules;
+
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setUp() {
+		modules = shape.modules(size);
+		pool = new ForkJoinPool();
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public DirectedGraph<IDependencyDescriptor<Integer>, GraphEdge<IDependencyDescriptor<Integer>>> newGraph()
+			throws UnsatisfiedDependencyException {
+		return DependencyGraphFactory.newGraph(modules, Functions.<IDependencyDescriptor<Integer>>identity());
+	}
+
+	@Benchmark
+	public DirectedGraph<IDependencyDescriptor<Integer>, GraphEdge<IDependencyDescriptor<Integer>>> newGraphParallel()
+			throws UnsatisfiedDependencyException {
+		return DependencyGraphFactory.newGraph(modules, Functions.<IDependencyDescriptor<Integer>>identity(), pool);
+	}
+
+	@Benchmark
+	public IDependencyGraph<IDependencyDescriptor<Integer>> newInstance()
+			throws UnsatisfiedDependencyException, CyclicGraphException {
+		return DependencyGraphFactory.newInstance(modules);
+	}
+
+}
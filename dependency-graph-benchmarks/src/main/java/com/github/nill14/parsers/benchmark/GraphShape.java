@@ -0,0 +1,87 @@
+package com.github.nill14.parsers.benchmark;
+
+import java.util.Random;
+import java.util.Set;
+
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IDependencyDescriptorBuilder;
+import com.github.nill14.parsers.dependency.impl.DependencyDescriptor;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Synthetic acyclic graph shapes. Module i provides the key i
+ * and uses the keys of its dependencies, all of them having a lower number.
+ */
+public enum GraphShape {
+
+	/**
+	 * Module i depends on module i-1
+	 */
+	CHAIN {
+		@Override
+		void dependencies(int i, Random random, IDependencyDescriptorBuilder<Integer> builder) {
+			if (i > 0) {
+				builder.uses(i - 1);
+			}
+		}
+	},
+
+	/**
+	 * A shallow tree, each module has up to 100 direct dependants
+	 */
+	FAN_OUT {
+		@Override
+		void dependencies(int i, Random random, IDependencyDescriptorBuilder<Integer> builder) {
+			if (i > 0) {
+				builder.uses((i - 1) / 100);
+			}
+		}
+	},
+
+	/**
+	 * Layers of 100 modules, each module depends on 3 random modules of the previous layer
+	 */
+	LAYERED {
+		@Override
+		void dependencies(int i, Random random, IDependencyDescriptorBuilder<Integer> builder) {
+			int layer = i / 100;
+			if (layer > 0) {
+				for (int j = 0; j < 3; j++) {
+					builder.uses((layer - 1) * 100 + random.nextInt(100));
+				}
+			}
+		}
+	},
+
+	/**
+	 * Layers of 2 modules, each module depends on both modules of the previous layer
+	 */
+	DIAMOND {
+		@Override
+		void dependencies(int i, Random random, IDependencyDescriptorBuilder<Integer> builder) {
+			int layer = i / 2;
+			if (layer > 0) {
+				builder.uses(layer * 2 - 2);
+				builder.uses(layer * 2 - 1);
+			}
+		}
+	};
+
+	abstract void dependencies(int i, Random random, IDependencyDescriptorBuilder<Integer> builder);
+
+	/**
+	 * @param size The module count
+	 * @return deterministic modules of the given shape
+	 */
+	public Set<IDependencyDescriptor<Integer>> modules(int size) {
+		Random random = new Random(size);
+		ImmutableSet.Builder<IDependencyDescriptor<Integer>> modules = ImmutableSet.builder();
+		for (int i = 0; i < size; i++) {
+			IDependencyDescriptorBuilder<Integer> builder = DependencyDescriptor.builder(i);
+			dependencies(i, random, builder);
+			modules.add(builder.build());
+		}
+		return modules.build();
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.github.nill14.parsers.benchmark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.GraphWalker;
+import com.github.nill14.parsers.graph.utils.GraphWalker2;
+import com.github.nill14.parsers.graph.utils.GraphWalker4;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Graph walks of many short modules, where the dispatch overhead dominates.
+ * Each module burns {@code tokens} of CPU, 1000 tokens take a few microseconds.
+ * {@code walkGraphBatched} compares the batched dispatch with the per module dispatch of {@code walkGraph}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class GraphWalkBenchmark {
+
+	@Param({"CHAIN", "FAN_OUT", "LAYERED", "DIAMOND"})
+	private GraphShape shape;
+
+	@Param({"100000"})
+	private int size;
+
+	@Param({"1000"})
+	private int tokens;
+
+	private IWalkableDependencyGraph<IDependencyDescriptor<Integer>> dependencyGraph;
+	private ImmutableList<IDependencyDescriptor<Integer>> topologicalOrder;
+	private IConsumer<IDependencyDescriptor<Integer>> moduleConsumer;
+	private int parallelism;
+	private ExecutorService executor;
+	private ForkJoinPool forkJoinPool;
+
+	@Setup
+	public void setUp() throws UnsatisfiedDependencyException, CyclicGraphException {
+		dependencyGraph = DependencyGraphFactory.newInstance(shape.modules(size));
+		topologicalOrder = ImmutableList.copyOf(dependencyGraph.getTopologicalOrder());
+		moduleConsumer = module -> Blackhole.consumeCPU(tokens);
+		parallelism = Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(parallelism);
+		forkJoinPool = new ForkJoinPool(parallelism);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+		forkJoinPool.shutdown();
+	}
+
+	@Benchmark
+	public void walkGraph() throws ExecutionException {
+		dependencyGraph.walkGraph(executor, moduleConsumer, parallelism);
+	}
+
+	@Benchmark
+	public void walkGraphBatched() throws ExecutionException {
+		dependencyGraph.walkGraphBatched(executor, moduleConsumer, parallelism);
+	}
+
+	@Benchmark
+	public void walkGraphWalker2() throws ExecutionException {
+		walk(new GraphWalker2<>(dependencyGraph.getGraph(), topologicalOrder, dependencyGraph.getModuleRankings(), parallelism));
+	}
+
+	@Benchmark
+	public void walkGraphWalker4() throws ExecutionException {
+		walk(new GraphWalker4<>(dependencyGraph.getGraph(), topologicalOrder, dependencyGraph.getModuleRankings(), parallelism));
+	}
+
+	/**
+	 * The ranked walkers share the ready queue between the dispatching thread and the workers
+	 */
+	private void walk(final GraphWalker<IDependencyDescriptor<Integer>> graphWalker) throws ExecutionException {
+		for (int i = 0; i < graphWalker.size(); i++) {
+			final IDependencyDescriptor<Integer> module = graphWalker.releaseNext();
+			executor.execute(() -> {
+				try {
+					moduleConsumer.process(module);
+					graphWalker.onComplete(module);
+				} catch (Exception e) {
+					graphWalker.onFailure(module, e);
+				}
+			});
+		}
+		graphWalker.awaitCompletion();
+	}
+
+	@Benchmark
+	public void walkGraphAsync() throws ExecutionException, InterruptedException {
+		dependencyGraph.walkGraphAsync(executor, moduleConsumer, parallelism).get();
+	}
+
+	@Benchmark
+	public void walkGraphForkJoin() throws ExecutionException {
+		dependencyGraph.walkGraphForkJoin(forkJoinPool, moduleConsumer);
+	}
+
+}
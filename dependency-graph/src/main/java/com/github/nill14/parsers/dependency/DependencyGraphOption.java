@@ -0,0 +1,32 @@
+package com.github.nill14.parsers.dependency;
+
+/**
+ * Optional features of a dependency graph, see {@link com.github.nill14.parsers.dependency.impl.DependencyGraphFactory}.
+ */
+public enum DependencyGraphOption {
+
+	/**
+	 * {@link IDependencyGraph#getAllDependencies(Object)} is answered from a reachability index
+	 * built once over the topological order. The index takes about V²/16 bytes,
+	 * but the transitive dependency sets are not copied per module.
+	 */
+	REACHABILITY_INDEX,
+
+	/**
+	 * The graph is constructed concurrently in a temporary fork/join pool,
+	 * see {@link com.github.nill14.parsers.dependency.impl.DependencyGraphFactory#newGraph(java.util.Set, com.google.common.base.Function, java.util.concurrent.ForkJoinPool)}.
+	 * The descriptors are adapted by the pool as well, each of them once.
+	 * Worthwhile for very large module sets, the adapter function must be thread-safe.
+	 */
+	PARALLEL_CONSTRUCTION,
+
+	/**
+	 * The modules are walked over the transitive reduction of the graph,
+	 * see {@link com.github.nill14.parsers.graph.utils.TransitiveReduction}.
+	 * The redundant edges (A -&gt; C when A -&gt; B -&gt; C exists) do not cost the walkers anything then.
+	 * {@link IDependencyGraph#getGraph()} and {@link IDependencyGraph#getDirectDependencies(Object)} still
+	 * return the declared dependencies.
+	 */
+	TRANSITIVE_REDUCTION,
+
+}
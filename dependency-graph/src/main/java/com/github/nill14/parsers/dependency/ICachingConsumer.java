@@ -0,0 +1,28 @@
+package com.github.nill14.parsers.dependency;
+
+/**
+ * A module processing closure whose results can be reused,
+ * see {@link com.github.nill14.parsers.dependency.impl.IncrementalWalk}
+ *
+ * @param <T> The modules
+ */
+public interface ICachingConsumer<T> {
+
+	/**
+	 * Perform an arbitrary code with the module.
+	 * Execution is guaranteed to be performed in topological order.
+	 * @param module The module to process
+	 * @return the output to be cached, possibly null
+	 * @throws Exception any processing exception
+	 */
+	byte[] process(T module) throws Exception;
+
+	/**
+	 * Called instead of {@link #process(Object)} when the module and all its dependencies are unchanged.
+	 * @param module The skipped module
+	 * @param output The output cached by the last processing, possibly null
+	 * @throws Exception any processing exception
+	 */
+	void restore(T module, byte[] output) throws Exception;
+
+}
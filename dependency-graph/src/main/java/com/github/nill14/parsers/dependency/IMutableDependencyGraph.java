@@ -0,0 +1,70 @@
+package com.github.nill14.parsers.dependency;
+
+import java.util.Collection;
+
+import com.github.nill14.parsers.graph.CyclicGraphException;
+
+/**
+ * A dependency graph accepting module additions and removals without a full rebuild.
+ * <p>
+ * The topological order and module rankings are maintained incrementally.
+ * Each change produces a new version, an immutable {@link IWalkableDependencyGraph}
+ * of the current version is available by {@link #snapshot()}.
+ *
+ * @param <M> The modules
+ */
+public interface IMutableDependencyGraph<M> {
+
+	/**
+	 * Adds the modules and connects them with the present ones.
+	 * The new modules may depend on each other. Already present modules are ignored.
+	 * The graph is left unchanged when an exception is thrown.
+	 *
+	 * @param modules The modules to be added
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency of a new module is missing
+	 * @throws CyclicGraphException when the modules would introduce a cycle
+	 */
+	void addModules(Collection<M> modules) throws UnsatisfiedDependencyException, CyclicGraphException;
+
+	/**
+	 * @see #addModules(Collection)
+	 * @param module The module to be added
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency of the module is missing
+	 * @throws CyclicGraphException when the module would introduce a cycle
+	 */
+	void addModule(M module) throws UnsatisfiedDependencyException, CyclicGraphException;
+
+	/**
+	 * Removes the modules. Unknown modules are ignored.
+	 * The graph is left unchanged when an exception is thrown.
+	 *
+	 * @param modules The modules to be removed
+	 * @throws UnsatisfiedDependencyException when a remaining module requires a dependency
+	 * provided by the removed modules only
+	 */
+	void removeModules(Collection<M> modules) throws UnsatisfiedDependencyException;
+
+	/**
+	 * @see #removeModules(Collection)
+	 * @param module The module to be removed
+	 * @throws UnsatisfiedDependencyException when a remaining module requires a dependency
+	 * provided by the removed module only
+	 */
+	void removeModule(M module) throws UnsatisfiedDependencyException;
+
+	/**
+	 *
+	 * @return the version, incremented by each successful change
+	 */
+	long getVersion();
+
+	/**
+	 * The snapshot is created lazily and cached until the next change.
+	 * The dependency sets of modules not affected by the changes are carried over
+	 * from the previous snapshot.
+	 *
+	 * @return an immutable dependency graph of the current version
+	 */
+	IWalkableDependencyGraph<M> snapshot();
+
+}
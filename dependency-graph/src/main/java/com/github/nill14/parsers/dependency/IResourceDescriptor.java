@@ -0,0 +1,21 @@
+package com.github.nill14.parsers.dependency;
+
+import java.util.Set;
+
+/**
+ * Optionally implemented by an {@link IDependencyDescriptor} whose module uses resources
+ * such as a database or a disk. The descriptors without this interface use no resources.
+ *
+ * @see IWalkableDependencyGraph#walkGraph(java.util.concurrent.ExecutorService, IConsumer, int, java.util.Map)
+ */
+public interface IResourceDescriptor {
+
+	/**
+	 * Resources such as a database or a disk used by the module.
+	 * The walk may limit the count of concurrently running modules per resource.
+	 * 
+	 * @return a set of resource tags
+	 */
+	Set<String> getResources();
+
+}
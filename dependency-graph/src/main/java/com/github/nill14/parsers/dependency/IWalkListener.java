@@ -0,0 +1,56 @@
+package com.github.nill14.parsers.dependency;
+
+/**
+ * Receives the events of a graph walk, see {@link IWalkableDependencyGraph#walkGraph(java.util.concurrent.ExecutorService, IConsumer, int, IWalkListener)}.
+ * <p>
+ * The modules are identified by their position in {@link IDependencyGraph#getTopologicalOrder()},
+ * so that an implementation can keep the data in (atomic) arrays.
+ * The module events are called concurrently from the executor threads, the events of a single module are ordered.
+ * When the walk succeeds, all the module events happen before {@link #walkFinished()}.
+ * When a module fails, {@link #walkFinished()} is called as soon as the failure is reported,
+ * the modules released before might still be running and report their events afterwards.
+ * An implementation must therefore publish its data safely, e.g. by atomic or concurrent structures.
+ *
+ * @param <M> The modules
+ */
+public interface IWalkListener<M> {
+
+	/**
+	 * Called from the walking thread before the first module is released
+	 * @param dependencyGraph The walked graph
+	 * @param parallelism the maximum amount of concurrently scheduled tasks
+	 */
+	void walkStarted(IDependencyGraph<M> dependencyGraph, int parallelism);
+
+	/**
+	 * Called from the walking thread when the module passed the parallelism limit
+	 * and is about to be submitted to the executor.
+	 * The members of a linear chain, which run as a single task, are released
+	 * from the executor thread when the previous member finished, i.e. from the thread
+	 * which then starts the member, hence the release still happens before the start.
+	 * @param index The position in the topological order
+	 * @param module The module
+	 */
+	void moduleReleased(int index, M module);
+
+	/**
+	 * Called from the executor thread before the module is processed
+	 * @param index The position in the topological order
+	 * @param module The module
+	 */
+	void moduleStarted(int index, M module);
+
+	/**
+	 * Called from the executor thread after the module is processed
+	 * @param index The position in the topological order
+	 * @param module The module
+	 * @param failure The processing exception or null on success
+	 */
+	void moduleFinished(int index, M module, Exception failure);
+
+	/**
+	 * Called from the walking thread when the walk is over, even when failed
+	 */
+	void walkFinished();
+
+}
@@ -0,0 +1,148 @@
+package com.github.nill14.parsers.dependency;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * The further walks of a dependency graph, implemented by the graphs of
+ * {@link com.github.nill14.parsers.dependency.impl.DependencyGraphFactory}.
+ * Kept apart from {@link IDependencyGraph} so that its implementations are not broken.
+ *
+ * @param <M> Module
+ */
+public interface IWalkableDependencyGraph<M> extends IDependencyGraph<M> {
+
+	/**
+	 * Instrumented version of {@link #walkGraph(ExecutorService, IConsumer, int)}.
+	 * E.g. {@link com.github.nill14.parsers.dependency.impl.WalkRecorder} records the module timing
+	 * and produces a report with the critical path.
+	 * 
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks 
+	 * @param walkListener a listener receiving the walk events
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	void walkGraph(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism, IWalkListener<M> walkListener)
+			throws ExecutionException;
+
+	/**
+	 * Walks the graph with limited concurrency of the modules using the same resource, 
+	 * see {@link IResourceDescriptor#getResources()}. The first ready module in the ranking order 
+	 * whose resources are all available is released, the modules waiting for a busy resource do not block the others.
+	 * The resources missing in the limits are not limited.
+	 * 
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks 
+	 * @param resourceLimits the maximum amount of concurrently running modules per resource tag
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	void walkGraph(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism, Map<String, Integer> resourceLimits)
+			throws ExecutionException;
+
+	/**
+	 * Walks just the target modules and all their dependencies, the other modules are not processed.
+	 * The modules are released in the same order as with {@link #walkGraph(ExecutorService, IConsumer, int)}.
+	 * The dependency closure is computed directly over the graph, the sets of {@link #getAllDependencies(Object)} are not built.
+	 * 
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks 
+	 * @param targets the modules to be processed along with their dependencies
+	 * @throws ExecutionException when the closure throws an exception
+	 * @throws IllegalArgumentException when a target is not a module of the graph
+	 */
+	void walkGraph(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism, Set<M> targets)
+			throws ExecutionException;
+
+	/**
+	 * Runs each released module on its own thread without any concurrency limit.
+	 * Virtual threads are used on Java 21+, platform threads otherwise.
+	 * Intended for modules blocked on I/O where the processor cores do not limit the execution.
+	 * 
+	 * @param moduleConsumer a processing closure
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	void walkGraphPerThread(IConsumer<M> moduleConsumer) throws ExecutionException;
+
+	/**
+	 * Runs each released module on its own thread, see {@link #walkGraphPerThread(IConsumer)}
+	 * The modules are released in the same order as with {@link #walkGraph(ExecutorService, IConsumer, int)}
+	 * 
+	 * @param moduleConsumer a processing closure
+	 * @param maxConcurrency the maximum amount of concurrently running modules
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	void walkGraphPerThread(IConsumer<M> moduleConsumer, int maxConcurrency) throws ExecutionException;
+
+	/**
+	 * Walks the graph releasing the ready modules in batches, each batch runs as a single executor task.
+	 * Intended for many tiny modules, where the dispatch per module costs more than the module itself.
+	 * The batch size adapts to the observed module durations, slow modules are still dispatched one by one.
+	 * 
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled batches 
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	void walkGraphBatched(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism) 
+			throws ExecutionException;
+
+	/**
+	 * Walks the graph on a {@link ForkJoinPool} without a dispatching thread.
+	 * The task completing a module forks the released successors and continues with the best ranked one,
+	 * hence the modules of a chain usually run on the same worker. Intended for many short running modules.
+	 * The parallelism is given by the pool.
+	 * 
+	 * @param pool a pool to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	void walkGraphForkJoin(ForkJoinPool pool, IConsumer<M> moduleConsumer) throws ExecutionException;
+
+	/**
+	 * Non-blocking version of {@link #walkGraph(ExecutorService, IConsumer)}.
+	 * No thread waits for the walk, each module is submitted to the executor 
+	 * by the task completing its last dependency.
+	 * 
+	 * Note: The parallelism is determined automatically from {@link ThreadPoolExecutor} and processor cores.
+	 * 
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @return a future completed when all modules are processed. 
+	 * When the closure throws an exception, the remaining modules are skipped and the future fails 
+	 * with the first exception, the other ones are added as suppressed. 
+	 */
+	ListenableFuture<Void> walkGraphAsync(Executor executor, IConsumer<M> moduleConsumer);
+
+	/**
+	 * Non-blocking version of {@link #walkGraph(ExecutorService, IConsumer, int)}.
+	 * 
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks 
+	 * @return a future completed when all modules are processed
+	 * @see #walkGraphAsync(Executor, IConsumer)
+	 */
+	ListenableFuture<Void> walkGraphAsync(Executor executor, IConsumer<M> moduleConsumer, int parallelism);
+
+	/**
+	 * Synchronous version of {@link #walkGraph(ExecutorService, IConsumer, int, Set)}
+	 * The order is the same as {@link #getTopologicalOrder()} without the modules not needed by the targets
+	 * 
+	 * @param moduleConsumer a processing closure
+	 * @param targets the modules to be processed along with their dependencies
+	 * @throws ExecutionException when the closure throws an exception
+	 * @throws IllegalArgumentException when a target is not a module of the graph
+	 */
+	void iterateTopoOrder(IConsumer<M> moduleConsumer, Set<M> targets) throws ExecutionException;
+
+}
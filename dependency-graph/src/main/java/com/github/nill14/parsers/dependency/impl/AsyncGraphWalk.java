@@ -0,0 +1,186 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A non-blocking graph walk. There is no coordinating thread,
+ * each task schedules the successors released by its own completion.
+ * <p>
+ * The ready modules are kept in topological (ranking) order.
+ * At most parallelism tasks are submitted to the executor at the same time.
+ * <p>
+ * A single thread dispatches at a time, the other threads just request another round.
+ * An executor running the tasks in the calling thread therefore does not nest the modules on the stack.
+ *
+ * @param <M> Module
+ */
+final class AsyncGraphWalk<M> {
+
+	private final GraphIndex<M> index;
+	private final Executor executor;
+	private final IConsumer<M> moduleConsumer;
+
+	private final AtomicIntegerArray blockers;
+	private final ConcurrentSkipListSet<Integer> ready = new ConcurrentSkipListSet<>();
+	private final Semaphore parallelism;
+	private final AtomicInteger remaining;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+	private final SettableFuture<Void> future = SettableFuture.create();
+	private volatile Throwable exception;
+
+	/**
+	 * @param index The graph index with vertex ids assigned in topological order
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks
+	 */
+	public AsyncGraphWalk(GraphIndex<M> index, Executor executor, IConsumer<M> moduleConsumer, int parallelism) {
+		this.index = index;
+		this.executor = executor;
+		this.moduleConsumer = moduleConsumer;
+		this.parallelism = new Semaphore(parallelism);
+
+		int size = index.size();
+		remaining = new AtomicInteger(size);
+		blockers = new AtomicIntegerArray(size);
+		for (int id = 0; id < size; id++) {
+			int count = index.inDegree(id);
+			if (count == 0) {
+				ready.add(id);
+			} else {
+				blockers.set(id, count);
+			}
+		}
+	}
+
+	/**
+	 * Starts the walk from the calling thread.
+	 * @return a future completed when all the modules are processed
+	 */
+	public ListenableFuture<Void> start() {
+		if (index.size() == 0) {
+			future.set(null);
+		} else {
+			dispatch();
+		}
+		return future;
+	}
+
+	/**
+	 * Drains the ready set, the nested or concurrent calls are repeated by the draining thread
+	 */
+	private void dispatch() {
+		if (dispatchRequests.getAndIncrement() != 0) {
+			return;
+		}
+		int requests = 1;
+		do {
+			drainReady();
+			requests = dispatchRequests.addAndGet(-requests);
+		} while (requests != 0);
+	}
+
+	private void drainReady() {
+		// every release of a permit and every addition to the ready set is followed by dispatch
+		// so no ready module can be left behind when a permit is available
+		while (!ready.isEmpty() && !future.isDone()) {
+			if (!parallelism.tryAcquire()) {
+				return;
+			}
+
+			Integer id = ready.pollFirst();
+			if (id == null) {
+				parallelism.release();
+				continue;
+			}
+
+			inFlight.incrementAndGet();
+			if (exception != null) {
+				inFlight.decrementAndGet();
+				parallelism.release();
+				completeExceptionally();
+				return;
+			}
+			submit(id);
+		}
+	}
+
+	private void submit(final int id) {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					execute(id);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			onFailure(e);
+			inFlight.decrementAndGet();
+			parallelism.release();
+			completeExceptionally();
+		}
+	}
+
+	private void execute(int id) {
+		boolean success = false;
+		if (exception == null && !future.isDone()) {
+			try {
+				moduleConsumer.process(index.vertex(id));
+				success = true;
+			} catch (Throwable e) {
+				// an error must not leave the permit taken and the future incomplete
+				onFailure(e);
+			}
+		}
+
+		if (success) {
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				int successor = index.successor(id, i);
+				if (blockers.decrementAndGet(successor) == 0) {
+					ready.add(successor);
+				}
+			}
+		}
+
+		inFlight.decrementAndGet();
+		parallelism.release();
+		if (success && remaining.decrementAndGet() == 0) {
+			future.set(null);
+		} else if (exception != null) {
+			completeExceptionally();
+		} else {
+			dispatch();
+		}
+	}
+
+	private synchronized void onFailure(Throwable e) {
+		if (exception == null) {
+			exception = e;
+		} else {
+			exception.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * The future fails only once all the running tasks are finished,
+	 * so that the exceptions of the other tasks can be collected.
+	 */
+	private void completeExceptionally() {
+		if (inFlight.get() == 0) {
+			future.setException(exception);
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.graph.utils.ChainContraction;
+import com.github.nill14.parsers.graph.utils.GraphWalker5;
+import com.google.common.collect.Lists;
+
+/**
+ * A graph walk which drains several ready modules at once and runs them as a single executor task.
+ * Intended for many tiny modules, where the dispatch (an executor submit and the semaphore traffic per module)
+ * costs more than the modules themselves.
+ * <p>
+ * The batch size adapts to the observed module durations: a batch is meant to take about
+ * {@value #TARGET_BATCH_NANOS} ns, hence slow modules still run one per task across all the workers.
+ * The batch size is also limited by the share of a single worker in the ready modules,
+ * see {@link GraphWalker5#releaseBatch(List, int)}.
+ * The first modules are treated as slow until measured.
+ *
+ * @param <M> Module
+ */
+final class BatchedGraphWalk<M> {
+
+	private static final long TARGET_BATCH_NANOS = 200_000L;
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private final ChainContraction<M> chains;
+	private final IConsumer<M> moduleConsumer;
+	private final GraphWalker5<M> graphWalker;
+
+	/**
+	 * A moving average of the module duration, updated by the workers without synchronization
+	 */
+	private final AtomicLong averageNanos = new AtomicLong(TARGET_BATCH_NANOS);
+
+	/**
+	 * @param chains The chains of a graph index with vertex ids assigned in topological order
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled batches
+	 */
+	public BatchedGraphWalk(ChainContraction<M> chains, IConsumer<M> moduleConsumer, int parallelism) {
+		this.chains = chains;
+		this.moduleConsumer = moduleConsumer;
+		this.graphWalker = new GraphWalker5<>(chains.getContractedIndex(), parallelism);
+	}
+
+	/**
+	 * @param executor an executor to be used for executing the closure
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	public void walk(Executor executor) throws ExecutionException {
+		for (int released = 0; released < graphWalker.size();) {
+			List<M> batch = Lists.newArrayList();
+			released += graphWalker.releaseBatch(batch, batchSize());
+			executor.execute(new BatchTask(batch));
+		}
+		graphWalker.awaitCompletion();
+	}
+
+	/**
+	 * @return the amount of modules taking about {@link #TARGET_BATCH_NANOS}
+	 */
+	private int batchSize() {
+		long size = TARGET_BATCH_NANOS / Math.max(1, averageNanos.get());
+		return (int) Math.max(1, Math.min(MAX_BATCH_SIZE, size));
+	}
+
+	private void recordDuration(long nanos, int count) {
+		long average = averageNanos.get();
+		averageNanos.lazySet(average - (average >> 3) + (nanos / count >> 3));
+	}
+
+	private final class BatchTask implements Runnable {
+
+		private final List<M> batch;
+
+		public BatchTask(List<M> batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			int count = 0;
+			for (M head : batch) {
+				try {
+					if (chains.isContracted()) {
+						int chain = chains.getContractedIndex().indexOf(head);
+						for (int i = 0, length = chains.chainLength(chain); i < length; i++) {
+							moduleConsumer.process(chains.chainMember(chain, i));
+							count++;
+						}
+					} else {
+						moduleConsumer.process(head);
+						count++;
+					}
+					graphWalker.onBatchMemberComplete(head);
+				} catch (Exception e) {
+					// the rest of the batch is skipped as any other released module after a failure
+					graphWalker.onFailure(head, e);
+					return;
+				}
+			}
+			recordDuration(System.nanoTime() - start, count);
+			graphWalker.onBatchComplete();
+		}
+	}
+
+}
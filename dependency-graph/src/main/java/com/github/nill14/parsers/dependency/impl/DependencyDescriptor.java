@@ -4,14 +4,16 @@ import java.util.Set;
 
 import com.github.nill14.parsers.dependency.IDependencyDescriptor;
 import com.github.nill14.parsers.dependency.IDependencyDescriptorBuilder;
+import com.github.nill14.parsers.dependency.IResourceDescriptor;
 import com.google.common.collect.ImmutableSet;
 
-public final class DependencyDescriptor<K> implements IDependencyDescriptor<K> {
+public final class DependencyDescriptor<K> implements IDependencyDescriptor<K>, IResourceDescriptor {
 	
 	
 	private final ImmutableSet<K> dependencies;
 	private final ImmutableSet<K> optDependencies;
 	private final ImmutableSet<K> optProviders;
+	private final ImmutableSet<String> resources;
 	private final K self;
 	private final int priority;
 
@@ -19,6 +21,7 @@ public final class DependencyDescriptor<K> implements IDependencyDescriptor<K> {
 		dependencies = builder.dependencies.build();
 		optDependencies = builder.optDependencies.build();
 		optProviders = builder.providers.build();
+		resources = builder.resources.build();
 		self = builder.self;
 		priority = builder.priority;
 		
@@ -47,6 +50,11 @@ public final class DependencyDescriptor<K> implements IDependencyDescriptor<K> {
 		return priority;
 	}
 	
+	@Override
+	public Set<String> getResources() {
+		return resources;
+	}
+	
 	public static <K> IDependencyDescriptorBuilder<K> builder(K self) {
 		return new Builder<>(self);
 	}
@@ -62,6 +70,7 @@ public final class DependencyDescriptor<K> implements IDependencyDescriptor<K> {
 		private final ImmutableSet.Builder<K> dependencies = ImmutableSet.builder();
 		private final ImmutableSet.Builder<K> optDependencies = ImmutableSet.builder();
 		private final ImmutableSet.Builder<K> providers = ImmutableSet.builder();
+		private final ImmutableSet.Builder<String> resources = ImmutableSet.builder();
 		private final K self;
 		private int priority = 0;
 		
@@ -93,6 +102,17 @@ public final class DependencyDescriptor<K> implements IDependencyDescriptor<K> {
 			this.priority = priority;
 			return this;
 		}
+		
+		/**
+		 * A resource held while the module runs, e.g. a database or a disk.
+		 * See {@link com.github.nill14.parsers.dependency.IWalkableDependencyGraph#walkGraph(java.util.concurrent.ExecutorService, com.github.nill14.parsers.dependency.IConsumer, int, java.util.Map)}
+		 * @param resource a resource tag
+		 * @return self
+		 */
+		public Builder<K> usesResource(String resource) {
+			resources.add(resource);
+			return this;
+		}
 
 		
 		@Override
@@ -1,48 +1,175 @@
 package com.github.nill14.parsers.dependency.impl;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
 import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.dependency.IResourceDescriptor;
 import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkListener;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
 import com.github.nill14.parsers.graph.CyclicGraphException;
 import com.github.nill14.parsers.graph.DirectedGraph;
 import com.github.nill14.parsers.graph.GraphEdge;
 import com.github.nill14.parsers.graph.GraphWalker;
-import com.github.nill14.parsers.graph.utils.GraphWalker3;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.github.nill14.parsers.graph.utils.ChainContraction;
+import com.github.nill14.parsers.graph.utils.GraphWalker5;
 import com.github.nill14.parsers.graph.utils.LongestPathTopoSorter;
+import com.github.nill14.parsers.graph.utils.ResourceGraphWalker;
+import com.github.nill14.parsers.graph.utils.ReachabilityIndex;
+import com.github.nill14.parsers.graph.utils.TransitiveReduction;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
-class DependencyGraph<M> implements IDependencyGraph<M> {
+class DependencyGraph<M> implements IWalkableDependencyGraph<M> {
 	
 	private final Set<M> modules;
 	private final DirectedGraph<M, GraphEdge<M>> graph;
 	private final LinkedHashMap<M, Integer> moduleRankings;
 	
 	private final ImmutableList<M> topologicalOrdering;
-	private final Map<M, DependencySet<M>> dependencySets = new ConcurrentHashMap<>();
+	private final GraphIndex<M> topologicalIndex;
+	private final ConcurrentMap<M, DependencySet<M>> dependencySets = new ConcurrentHashMap<>();
+	private final ReachabilityIndex<M> reachabilityIndex;
+	private final Set<DependencyGraphOption> options;
+	private final SetMultimap<M, String> moduleResources;
+	private volatile ChainContraction<M> chainContraction;
 	
 	public DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph) throws CyclicGraphException {
-		this.graph = graph;
-		this.modules = graph.nodes();
-		moduleRankings = new LongestPathTopoSorter<>(graph).getLongestPathMap();
-		topologicalOrdering = ImmutableList.copyOf(moduleRankings.keySet());
+		this(graph, EnumSet.noneOf(DependencyGraphOption.class));
+	}
+	
+	public DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph, Set<DependencyGraphOption> options) throws CyclicGraphException {
+		this(graph, new LongestPathTopoSorter<>(graph).getLongestPathMap(), options, ImmutableSetMultimap.<M, String>of());
 	}
 	
 	public DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph, Function<M, Integer> priorityFunction) throws CyclicGraphException {
+		this(graph, priorityFunction, EnumSet.noneOf(DependencyGraphOption.class));
+	}
+	
+	public DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph, Function<M, Integer> priorityFunction, 
+			Set<DependencyGraphOption> options) throws CyclicGraphException {
+		this(graph, priorityFunction, options, ImmutableSetMultimap.<M, String>of());
+	}
+	
+	/**
+	 * @param graph A directed acyclic graph
+	 * @param priorityFunction The execution priorities
+	 * @param options The optional features
+	 * @param moduleResources The resource tags of the modules, see {@link IResourceDescriptor#getResources()}
+	 * @throws CyclicGraphException when graph is not acyclic
+	 */
+	public DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph, Function<M, Integer> priorityFunction, 
+			Set<DependencyGraphOption> options, SetMultimap<M, String> moduleResources) throws CyclicGraphException {
+		this(graph, new LongestPathTopoSorter<>(graph).getLongestPathMap(priorityFunction), options, moduleResources);
+	}
+	
+	/**
+	 * @param graph A directed acyclic graph
+	 * @param moduleRankings Precomputed longest path rankings, sorted descendingly
+	 * @param options The optional features
+	 * @param moduleResources The resource tags of the modules
+	 */
+	DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph, LinkedHashMap<M, Integer> moduleRankings, 
+			Set<DependencyGraphOption> options, SetMultimap<M, String> moduleResources) {
+		this(graph, moduleRankings, GraphIndex.of(graph, ImmutableList.copyOf(moduleRankings.keySet())), 
+				options, moduleResources);
+	}
+	
+	/**
+	 * Restores a graph without recomputing the rankings, see {@link GraphSnapshot}
+	 * @param topologicalIndex The graph index with vertex ids assigned in topological order
+	 * @param moduleRankings The rankings in the same order as the vertex ids
+	 * @param options The optional features
+	 * @param moduleResources The resource tags of the modules
+	 */
+	DependencyGraph(GraphIndex<M> topologicalIndex, LinkedHashMap<M, Integer> moduleRankings, 
+			Set<DependencyGraphOption> options, SetMultimap<M, String> moduleResources) {
+		this(CompactDirectedGraph.fromIndex(topologicalIndex), moduleRankings, topologicalIndex, options, moduleResources);
+	}
+	
+	private DependencyGraph(DirectedGraph<M, GraphEdge<M>> graph, LinkedHashMap<M, Integer> moduleRankings, 
+			GraphIndex<M> topologicalIndex, Set<DependencyGraphOption> options, SetMultimap<M, String> moduleResources) {
 		this.graph = graph;
 		this.modules = graph.nodes();
-		moduleRankings = new LongestPathTopoSorter<>(graph).getLongestPathMap(priorityFunction);
+		this.moduleRankings = moduleRankings;
 		topologicalOrdering = ImmutableList.copyOf(moduleRankings.keySet());
-		
+		this.options = Sets.immutableEnumSet(options);
+		this.moduleResources = ImmutableSetMultimap.copyOf(moduleResources);
+		this.topologicalIndex = newTopologicalIndex(topologicalIndex, options);
+		reachabilityIndex = newReachabilityIndex(options);
+	}
+	
+	/**
+	 * Takes over the already built dependency sets of the previous version of the graph.
+	 * @param previous The previous version
+	 * @param invalidated The modules whose dependencies might have changed
+	 */
+	void retainDependencySets(DependencyGraph<M> previous, Set<M> invalidated) {
+		if (reachabilityIndex != null) {
+			return;
+		}
+		for (Entry<M, DependencySet<M>> entry : previous.dependencySets.entrySet()) {
+			M module = entry.getKey();
+			Set<M> set = entry.getValue().getBuiltSet();
+			if (set != null && modules.contains(module) && !invalidated.contains(module)) {
+				dependencySets.put(module, new DependencySet<>(this, module, set));
+			}
+		}
+	}
+	
+	/**
+	 * @return the resource tags of the modules
+	 */
+	SetMultimap<M, String> getModuleResources() {
+		return moduleResources;
+	}
+	
+	/**
+	 * @return the optional features the graph was built with
+	 */
+	Set<DependencyGraphOption> getOptions() {
+		return options;
+	}
+	
+	/**
+	 * The walks and the dependency sets use the index, the reduction preserves reachability
+	 * and the rankings (the longest paths) of the modules.
+	 */
+	private GraphIndex<M> newTopologicalIndex(GraphIndex<M> index, Set<DependencyGraphOption> options) {
+		if (options.contains(DependencyGraphOption.TRANSITIVE_REDUCTION)) {
+			return TransitiveReduction.reduce(index);
+		}
+		return index;
+	}
+	
+	private ReachabilityIndex<M> newReachabilityIndex(Set<DependencyGraphOption> options) {
+		if (options.contains(DependencyGraphOption.REACHABILITY_INDEX)) {
+			return new ReachabilityIndex<>(topologicalIndex);
+		}
+		return null;
 	}
 
 	
@@ -67,18 +194,17 @@ class DependencyGraph<M> implements IDependencyGraph<M> {
 			throw new NullPointerException();
 		}
 		
+		if (reachabilityIndex != null) {
+			return reachabilityIndex.ancestors(module);
+		}
+		
 		DependencySet<M> dependencySet = dependencySets.get(module);
 		if (dependencySet == null) {
-			/*
-			 * I don't like sync over exposed object
-			 * but this is the fastest alternative.
-			 */			
-			synchronized (module) {
-				dependencySet = dependencySets.get(module);
-				if (dependencySet == null) {
-					dependencySet = new DependencySet<M>(this, module);
-					dependencySets.put(module, dependencySet);
-				}
+			// the set is cheap until built, a racing duplicate is just dropped
+			DependencySet<M> newSet = new DependencySet<M>(this, module);
+			dependencySet = dependencySets.putIfAbsent(module, newSet);
+			if (dependencySet == null) {
+				dependencySet = newSet;
 			}
 		}
 		return dependencySet;
@@ -99,6 +225,10 @@ class DependencyGraph<M> implements IDependencyGraph<M> {
 			final IConsumer<M> moduleConsumer)
 			throws ExecutionException {
 		
+		walkGraph(executor, moduleConsumer, defaultParallelism(executor));
+	}
+	
+	private static int defaultParallelism(Executor executor) {
 		int parallelism = Runtime.getRuntime().availableProcessors();
 		if (executor instanceof ThreadPoolExecutor) {
 			int coreSize = ((ThreadPoolExecutor) executor).getCorePoolSize();
@@ -107,7 +237,29 @@ class DependencyGraph<M> implements IDependencyGraph<M> {
 			parallelism = Math.max(parallelism, coreSize);
 			parallelism = Math.min(parallelism, maxSize);
 		}
-		walkGraph(executor, moduleConsumer, parallelism);
+		return parallelism;
+	}
+	
+	@Override
+	public void walkGraphBatched(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism)
+			throws ExecutionException {
+		
+		new BatchedGraphWalk<>(chainContraction(), moduleConsumer, parallelism).walk(executor);
+	}
+	
+	@Override
+	public void walkGraphForkJoin(ForkJoinPool pool, IConsumer<M> moduleConsumer) throws ExecutionException {
+		new ForkJoinGraphWalk<>(topologicalIndex, moduleConsumer).walk(pool);
+	}
+	
+	@Override
+	public ListenableFuture<Void> walkGraphAsync(Executor executor, IConsumer<M> moduleConsumer) {
+		return walkGraphAsync(executor, moduleConsumer, defaultParallelism(executor));
+	}
+	
+	@Override
+	public ListenableFuture<Void> walkGraphAsync(Executor executor, IConsumer<M> moduleConsumer, int parallelism) {
+		return new AsyncGraphWalk<>(topologicalIndex, executor, moduleConsumer, parallelism).start();
 	}
 	
 	@Override
@@ -122,27 +274,261 @@ class DependencyGraph<M> implements IDependencyGraph<M> {
 		}
 	}
 
+	@Override
+	public void iterateTopoOrder(IConsumer<M> moduleConsumer, Set<M> targets) throws ExecutionException {
+		
+		for (int id : closure(targets)) {
+			try {
+				moduleConsumer.process(topologicalIndex.vertex(id));
+			} catch (Exception e) {
+				throw new ExecutionException(e);
+			}
+		}
+	}
+	
 	@Override
 	public void walkGraph(final ExecutorService executor,
 			final IConsumer<M> moduleConsumer, int parallelism)
 			throws ExecutionException {
 		
-		final GraphWalker<M> graphWalker = new GraphWalker3<>(graph, topologicalOrdering, parallelism);
-		
-		for (int i = 0; i < graphWalker.size(); i++) {
-			final M module = graphWalker.releaseNext();
-			executor.execute(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						moduleConsumer.process(module);
-						graphWalker.onComplete(module);
-					} catch (Exception e) {
-						graphWalker.onFailure(module, e);
-					}
+		walk(executor, moduleConsumer, parallelism, null);
+	}
+	
+	@Override
+	public void walkGraph(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism, Set<M> targets)
+			throws ExecutionException {
+		
+		ChainContraction<M> chains = ChainContraction.of(subgraphIndex(closure(targets)));
+		walk(executor, moduleConsumer, chains, parallelism, null);
+	}
+	
+	/**
+	 * @param targets The target modules
+	 * @return the topological ids of the targets and all their dependencies, ascending
+	 */
+	private int[] closure(Set<M> targets) {
+		int size = topologicalIndex.size();
+		boolean[] marked = new boolean[size];
+		int[] stack = new int[size];
+		int top = 0;
+		for (M target : targets) {
+			int id = topologicalIndex.indexOf(target);
+			if (id < 0) {
+				throw new IllegalArgumentException("Unknown module: " + target);
+			}
+			if (!marked[id]) {
+				marked[id] = true;
+				stack[top++] = id;
+			}
+		}
+		
+		int count = top;
+		while (top > 0) {
+			int id = stack[--top];
+			for (int i = 0, degree = topologicalIndex.inDegree(id); i < degree; i++) {
+				int predecessor = topologicalIndex.predecessor(id, i);
+				if (!marked[predecessor]) {
+					marked[predecessor] = true;
+					stack[top++] = predecessor;
+					count++;
+				}
+			}
+		}
+		
+		int[] ids = new int[count];
+		for (int id = 0, i = 0; i < count; id++) {
+			if (marked[id]) {
+				ids[i++] = id;
+			}
+		}
+		return ids;
+	}
+	
+	/**
+	 * The closure contains all the dependencies of its modules, 
+	 * hence just the successors outside of the closure are dropped.
+	 * @param ids The ascending ids of a dependency closure
+	 * @return the index of the closure, keeping the topological order
+	 */
+	private GraphIndex<M> subgraphIndex(int[] ids) {
+		int[] subgraphIds = new int[topologicalIndex.size()];
+		Arrays.fill(subgraphIds, -1);
+		for (int i = 0; i < ids.length; i++) {
+			subgraphIds[ids[i]] = i;
+		}
+		
+		List<M> vertices = Lists.newArrayListWithCapacity(ids.length);
+		int[] offsets = new int[ids.length + 1];
+		for (int i = 0; i < ids.length; i++) {
+			vertices.add(topologicalIndex.vertex(ids[i]));
+			offsets[i + 1] = offsets[i];
+			for (int j = 0, degree = topologicalIndex.outDegree(ids[i]); j < degree; j++) {
+				if (subgraphIds[topologicalIndex.successor(ids[i], j)] >= 0) {
+					offsets[i + 1]++;
+				}
+			}
+		}
+		
+		// the ids are mapped monotonically, the successors stay sorted
+		int[] successors = new int[offsets[ids.length]];
+		for (int i = 0, pos = 0; i < ids.length; i++) {
+			for (int j = 0, degree = topologicalIndex.outDegree(ids[i]); j < degree; j++) {
+				int successor = subgraphIds[topologicalIndex.successor(ids[i], j)];
+				if (successor >= 0) {
+					successors[pos++] = successor;
 				}
-			});
+			}
 		}
-		graphWalker.awaitCompletion();
+		return GraphIndex.fromAdjacency(vertices, offsets, successors);
+	}
+	
+	@Override
+	public void walkGraph(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism, 
+			IWalkListener<M> walkListener) throws ExecutionException {
+		
+		walk(executor, moduleConsumer, parallelism, walkListener);
+	}
+	
+	@Override
+	public void walkGraphPerThread(IConsumer<M> moduleConsumer) throws ExecutionException {
+		walkGraphPerThread(moduleConsumer, Integer.MAX_VALUE);
 	}
+	
+	@Override
+	public void walkGraphPerThread(IConsumer<M> moduleConsumer, int maxConcurrency) throws ExecutionException {
+		walk(ThreadPerTaskExecutor.newVirtualThreadExecutor(), moduleConsumer, maxConcurrency, null);
+	}
+	
+	@Override
+	public void walkGraph(ExecutorService executor, IConsumer<M> moduleConsumer, int parallelism,
+			Map<String, Integer> resourceLimits) throws ExecutionException {
+		
+		Map<String, Integer> resourceIds = Maps.newHashMap();
+		int[] limits = new int[resourceLimits.size()];
+		for (Entry<String, Integer> entry : resourceLimits.entrySet()) {
+			limits[resourceIds.size()] = entry.getValue();
+			resourceIds.put(entry.getKey(), resourceIds.size());
+		}
+		
+		// the resources without a limit are not tracked at all
+		int[][] resources = new int[topologicalIndex.size()][];
+		for (int id = 0; id < resources.length; id++) {
+			List<Integer> moduleResources = Lists.newArrayList();
+			for (String resource : this.moduleResources.get(topologicalIndex.vertex(id))) {
+				Integer resourceId = resourceIds.get(resource);
+				if (resourceId != null) {
+					moduleResources.add(resourceId);
+				}
+			}
+			resources[id] = Ints.toArray(moduleResources);
+		}
+		
+		walk(executor, moduleConsumer, new ResourceGraphWalker<>(topologicalIndex, parallelism, resources, limits), 
+				null, parallelism, null);
+	}
+	
+	private void walk(Executor executor, IConsumer<M> moduleConsumer, int parallelism, 
+			IWalkListener<M> walkListener) throws ExecutionException {
+		
+		walk(executor, moduleConsumer, chainContraction(), parallelism, walkListener);
+	}
+	
+	private ChainContraction<M> chainContraction() {
+		ChainContraction<M> chains = chainContraction;
+		if (chains == null) {
+			// computed once per graph, a concurrent duplicate computation does not matter
+			chainContraction = chains = ChainContraction.of(topologicalIndex);
+		}
+		return chains;
+	}
+	
+	/**
+	 * The linear chains are scheduled as single tasks when there are any
+	 */
+	private void walk(Executor executor, IConsumer<M> moduleConsumer, ChainContraction<M> chains, int parallelism, 
+			IWalkListener<M> walkListener) throws ExecutionException {
+		
+		walk(executor, moduleConsumer, new GraphWalker5<>(chains.getContractedIndex(), parallelism), 
+				chains.isContracted() ? chains : null, parallelism, walkListener);
+	}
+	
+	/**
+	 * @param graphWalker The walker releasing the modules, or the chain heads when contracted
+	 * @param chains The chains of the released heads or null
+	 */
+	private void walk(Executor executor, final IConsumer<M> moduleConsumer, final GraphWalker<M> graphWalker, 
+			final ChainContraction<M> chains, int parallelism, IWalkListener<M> walkListener) throws ExecutionException {
+		
+		@SuppressWarnings("unchecked")
+		final IWalkListener<M> listener = GraphEvents.getInstance().walkListener(
+				walkListener != null ? walkListener : (IWalkListener<M>) NO_LISTENER,
+				chains != null ? chains.getIndex().size() : graphWalker.size());
+		
+		listener.walkStarted(this, parallelism);
+		try {
+			for (int i = 0; i < graphWalker.size(); i++) {
+				final M module = graphWalker.releaseNext();
+				final int index = topologicalIndex.indexOf(module);
+				final int chain = chains != null ? chains.getContractedIndex().indexOf(module) : -1;
+				listener.moduleReleased(index, module);
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						M current = module;
+						try {
+							process(index, module);
+							// a failure skips the rest of the chain as it skips any other dependants
+							for (int j = 1, length = chain >= 0 ? chains.chainLength(chain) : 1; j < length; j++) {
+								current = chains.chainMember(chain, j);
+								int memberIndex = topologicalIndex.indexOf(current);
+								listener.moduleReleased(memberIndex, current);
+								process(memberIndex, current);
+							}
+							graphWalker.onComplete(module);
+						} catch (Exception e) {
+							// the failed member is reported, the walker just fails the whole walk
+							graphWalker.onFailure(current, e);
+						}
+					}
+					
+					private void process(int index, M module) throws Exception {
+						listener.moduleStarted(index, module);
+						try {
+							moduleConsumer.process(module);
+						} catch (Exception e) {
+							listener.moduleFinished(index, module, e);
+							throw e;
+						}
+						listener.moduleFinished(index, module, null);
+					}
+				});
+			}
+			graphWalker.awaitCompletion();
+		} finally {
+			listener.walkFinished();
+		}
+	}
+	
+	private static final IWalkListener<Object> NO_LISTENER = new IWalkListener<Object>() {
+		
+		@Override
+		public void walkStarted(IDependencyGraph<Object> dependencyGraph, int parallelism) {
+		}
+		
+		@Override
+		public void moduleReleased(int index, Object module) {
+		}
+		
+		@Override
+		public void moduleStarted(int index, Object module) {
+		}
+		
+		@Override
+		public void moduleFinished(int index, Object module, Exception failure) {
+		}
+		
+		@Override
+		public void walkFinished() {
+		}
+	};
 }
@@ -1,19 +1,29 @@
 package com.github.nill14.parsers.dependency.impl;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
 import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IMutableDependencyGraph;
+import com.github.nill14.parsers.dependency.IResourceDescriptor;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
 import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
 import com.github.nill14.parsers.graph.CyclicGraphException;
 import com.github.nill14.parsers.graph.DirectedGraph;
 import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
 import com.github.nill14.parsers.graph.impl.DefaultDirectedGraph;
 import com.github.nill14.parsers.graph.impl.EvaluatedGraphEdge;
+import com.github.nill14.parsers.graph.utils.LongestPathTopoSorter;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableMap;
@@ -28,20 +38,42 @@ public class DependencyGraphFactory<K, M>  {
 	private static final Logger log = LoggerFactory.getLogger(DependencyGraphFactory.class);
 
 	/**
-	 * Create new DependencyGraph based on directed acyclic graph and priority map
+	 * Create new DependencyGraph based on directed acyclic graph and priority map.
+	 * The modules have no resource tags, the resource limits of a walk do not apply to them.
 	 * @param <K> The keys used to establish connection between modules.
 	 * @param <M> The modules
 	 * @param graph A directed acyclic graph (DAG), predecessors are dependencies
 	 * @param priorityMap Priority map, possibly empty
-	 * @return A new IDependencyGraph
+	 * @param options The optional features
+	 * @return A new IWalkableDependencyGraph
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
+	 * @throws CyclicGraphException when graph is not acyclic
+	 */
+	public static <K, M> IWalkableDependencyGraph<M> fromGraph(
+			DirectedGraph<M, GraphEdge<M>> graph, Map<M, Integer> priorityMap, DependencyGraphOption... options) 
+					throws UnsatisfiedDependencyException, CyclicGraphException {
+		
+		return fromGraph(graph, priorityMap, ImmutableSetMultimap.<M, String>of(), options);
+	}
+
+	/**
+	 * Create new DependencyGraph based on directed acyclic graph, priority map and resource tags
+	 * @param <K> The keys used to establish connection between modules.
+	 * @param <M> The modules
+	 * @param graph A directed acyclic graph (DAG), predecessors are dependencies
+	 * @param priorityMap Priority map, possibly empty
+	 * @param moduleResources The resource tags of the modules, see {@link IResourceDescriptor#getResources()}
+	 * @param options The optional features
+	 * @return A new IWalkableDependencyGraph
 	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
 	 * @throws CyclicGraphException when graph is not acyclic
 	 */
-	public static <K, M> IDependencyGraph<M> fromGraph(
-			DirectedGraph<M, GraphEdge<M>> graph, Map<M, Integer> priorityMap) throws UnsatisfiedDependencyException, CyclicGraphException {
+	public static <K, M> IWalkableDependencyGraph<M> fromGraph(
+			DirectedGraph<M, GraphEdge<M>> graph, Map<M, Integer> priorityMap, SetMultimap<M, String> moduleResources, 
+			DependencyGraphOption... options) throws UnsatisfiedDependencyException, CyclicGraphException {
 		
 		ImmutableMap<M, Integer> map = ImmutableMap.copyOf(priorityMap);
-		return new DependencyGraph<>(graph, Functions.forMap(map, 0));
+		return new DependencyGraph<>(graph, Functions.forMap(map, 0), toSet(options), moduleResources);
 	}
 
 	/**
@@ -49,11 +81,11 @@ public class DependencyGraphFactory<K, M>  {
   	 * @param <K> The keys used to establish connection between modules.
 	 * @param <M> The modules
 	 * @param modules The dependency units
-	 * @return A new IDependencyGraph
+	 * @return A new IWalkableDependencyGraph
 	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
 	 * @throws CyclicGraphException when graph is not acyclic
 	 */
-	public static <K, M extends IDependencyDescriptor<K>> IDependencyGraph<M> newInstance(
+	public static <K, M extends IDependencyDescriptor<K>> IWalkableDependencyGraph<M> newInstance(
 			Set<M> modules) throws UnsatisfiedDependencyException, CyclicGraphException {
 		
 		return newInstance(modules, Functions.<M>identity());
@@ -65,19 +97,107 @@ public class DependencyGraphFactory<K, M>  {
 	 * @param <M> The modules
 	 * @param modules The dependency units
 	 * @param adapterFunction The function module -&gt; {@link IDependencyDescriptor}
-	 * @return A new IDependencyGraph
+	 * @param options The optional features
+	 * @return A new IWalkableDependencyGraph
 	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
 	 * @throws CyclicGraphException when graph is not acyclic
 	 */
-	public static <K, M> IDependencyGraph<M> newInstance(
-			Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction) 
+	public static <K, M> IWalkableDependencyGraph<M> newInstance(
+			Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction, DependencyGraphOption... options) 
 					throws UnsatisfiedDependencyException, CyclicGraphException {
 		
+		GraphEvents events = GraphEvents.getInstance();
+		Set<DependencyGraphOption> optionSet = toSet(options);
+		if (optionSet.contains(DependencyGraphOption.PARALLEL_CONSTRUCTION)) {
+			return newParallelInstance(modules, adapterFunction, optionSet, events);
+		}
+		
+		Object phase = events.beginPhase();
 		Function<M, IDependencyDescriptor<K>> f = newCachedAdapterFunction(modules, adapterFunction);
 		Function<M, Integer> priorityFunction = newPriorityFunction(modules, f);
+		events.endPhase(phase, "descriptor adaptation", modules.size());
+		
+		phase = events.beginPhase();
 		DirectedGraph<M, GraphEdge<M>> graph = newGraph(modules, f);
+		events.endPhase(phase, "edge build", modules.size());
+		
+		return rankGraph(graph, priorityFunction, newResourceMap(modules, f), optionSet, events);
+	}
+	
+	/**
+	 * The descriptors are adapted in parallel by the scatter phase of the builder,
+	 * along with their priorities and resources. The adapter function is not called again.
+	 */
+	private static <K, M> DependencyGraph<M> newParallelInstance(Set<M> modules, 
+			Function<M, ? extends IDependencyDescriptor<K>> adapterFunction, Set<DependencyGraphOption> optionSet, 
+			GraphEvents events) throws UnsatisfiedDependencyException, CyclicGraphException {
+		
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			Object phase = events.beginPhase();
+			ParallelGraphBuilder<K, M> builder = new ParallelGraphBuilder<>(modules, adapterFunction, pool.getParallelism());
+			DirectedGraph<M, GraphEdge<M>> graph = builder.build(pool);
+			events.endPhase(phase, "parallel descriptor adaptation and edge build", modules.size());
+			
+			return rankGraph(graph, builder.getPriorityFunction(), builder.getModuleResources(), optionSet, events);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	private static <M> DependencyGraph<M> rankGraph(DirectedGraph<M, GraphEdge<M>> graph, 
+			Function<M, Integer> priorityFunction, SetMultimap<M, String> moduleResources, 
+			Set<DependencyGraphOption> optionSet, GraphEvents events) throws CyclicGraphException {
+		
+		int size = graph.nodes().size();
+		Object phase = events.beginPhase();
+		LinkedHashMap<M, Integer> moduleRankings = new LongestPathTopoSorter<>(graph).getLongestPathMap(priorityFunction);
+		events.endPhase(phase, "longest path sort", size);
+		
+		phase = events.beginPhase();
+		DependencyGraph<M> dependencyGraph = new DependencyGraph<>(graph, moduleRankings, optionSet, moduleResources);
+		events.endPhase(phase, "graph build", size);
+		return dependencyGraph;
+	}
+	
+	/**
+	 * Create new mutable DependencyGraph based on modules
+	 * @param <K> The keys used to establish connection between modules.
+	 * @param <M> The modules
+	 * @param modules The initial dependency units
+	 * @param options The optional features of the snapshots
+	 * @return A new IMutableDependencyGraph
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
+	 * @throws CyclicGraphException when graph is not acyclic
+	 */
+	public static <K, M extends IDependencyDescriptor<K>> IMutableDependencyGraph<M> newMutableInstance(
+			Set<M> modules, DependencyGraphOption... options) throws UnsatisfiedDependencyException, CyclicGraphException {
 		
-		return new DependencyGraph<>(graph, priorityFunction);
+		return newMutableInstance(modules, Functions.<M>identity(), options);
+	}
+	
+	/**
+	 * Create new mutable DependencyGraph based on modules
+	 * @param <K> The keys used to establish connection between modules.
+	 * @param <M> The modules
+	 * @param modules The initial dependency units
+	 * @param adapterFunction The function module -&gt; {@link IDependencyDescriptor}
+	 * @param options The optional features of the snapshots
+	 * @return A new IMutableDependencyGraph
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
+	 * @throws CyclicGraphException when graph is not acyclic
+	 */
+	public static <K, M> IMutableDependencyGraph<M> newMutableInstance(
+			Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction, DependencyGraphOption... options) 
+					throws UnsatisfiedDependencyException, CyclicGraphException {
+		
+		return new MutableDependencyGraph<>(modules, adapterFunction, toSet(options));
+	}
+	
+	static Set<DependencyGraphOption> toSet(DependencyGraphOption[] options) {
+		EnumSet<DependencyGraphOption> set = EnumSet.noneOf(DependencyGraphOption.class);
+		set.addAll(Arrays.asList(options));
+		return set;
 	}
 
 	
@@ -90,6 +210,17 @@ public class DependencyGraphFactory<K, M>  {
 		return Functions.forMap(builder.build());
 	}
 	
+	static <K, M> SetMultimap<M, String> newResourceMap(Collection<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction) {
+		ImmutableSetMultimap.Builder<M, String> builder = ImmutableSetMultimap.builder();
+		for (M module : modules) {
+			IDependencyDescriptor<K> descriptor = adapterFunction.apply(module);
+			if (descriptor instanceof IResourceDescriptor) {
+				builder.putAll(module, ((IResourceDescriptor) descriptor).getResources());
+			}
+		}
+		return builder.build();
+	}
+	
 	private static <K, M> Function<M, Integer> newPriorityFunction(Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction) throws UnsatisfiedDependencyException {
 		ImmutableMap.Builder<M, Integer> priorityMapBuilder = ImmutableMap.builder();
 		for (M module : modules) {
@@ -135,6 +266,7 @@ public class DependencyGraphFactory<K, M>  {
 		SetMultimap<K, M> consumersOpt = consumersOptBuilder.build();
 		SetMultimap<K, M> producers = producersBuilder.build();
 		Builder<GraphEdge<M>> edges = ImmutableSet.builder();
+		boolean trace = log.isTraceEnabled();
 		
 		Set<K> keys = Sets.union(consumers.keySet(), consumersOpt.keySet());
 		for (K key : keys) {
@@ -151,7 +283,9 @@ public class DependencyGraphFactory<K, M>  {
 					}
 					
 					GraphEdge<M> edge = EvaluatedGraphEdge.edge(source, target);
-					log.trace("({}) {} -> {}", key, source, target);
+					if (trace) {
+						log.trace("({}) {} -> {}", key, source, target);
+					}
 					edges.add(edge);
 				}
 			}
@@ -165,7 +299,9 @@ public class DependencyGraphFactory<K, M>  {
 					}
 					
 					GraphEdge<M> edge = EvaluatedGraphEdge.edge(source, target);
-					log.trace("({} opt) {} -> {}", key, source, target);
+					if (trace) {
+						log.trace("({} opt) {} -> {}", key, source, target);
+					}
 					edges.add(edge);
 				}
 			}
@@ -177,4 +313,39 @@ public class DependencyGraphFactory<K, M>  {
 			.build();
 	}
 	
+	/**
+	 * Create a new Directed graph concurrently, see {@link #newGraph(Set, Function)}.
+	 * The producers and consumers are indexed by partitions of keys in parallel
+	 * and the edges are collected as module ids, without any per edge allocation before the graph is built.
+	 * The result is a {@link CompactDirectedGraph}, the parallel edges are merged.
+	 * @param <K> The keys used to establish connection between modules.
+	 * @param <M> The modules
+	 * @param modules The dependency units
+	 * @param adapterFunction The thread-safe function module -&gt; {@link IDependencyDescriptor}
+	 * @param pool The pool executing the construction tasks
+	 * @return A new IDependencyGraph
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
+	 */
+	public static <K, M> DirectedGraph<M, GraphEdge<M>> newGraph(
+			Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction, ForkJoinPool pool) 
+					throws UnsatisfiedDependencyException {
+		
+		return new ParallelGraphBuilder<>(modules, adapterFunction, pool.getParallelism()).build(pool);
+	}
+	
+	static <K, M> DirectedGraph<M, GraphEdge<M>> newGraph(
+			Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction, Set<DependencyGraphOption> options) 
+					throws UnsatisfiedDependencyException {
+		
+		if (!options.contains(DependencyGraphOption.PARALLEL_CONSTRUCTION)) {
+			return newGraph(modules, adapterFunction);
+		}
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return newGraph(modules, adapterFunction, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
 }
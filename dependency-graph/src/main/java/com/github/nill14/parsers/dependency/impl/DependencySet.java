@@ -17,10 +17,24 @@ public class DependencySet<M> implements Set<M> {
 		this.module = module;
 	}
 	
+	DependencySet(DependencyGraph<M> graph, M module, Set<M> set) {
+		this.graph = graph;
+		this.module = module;
+		this.set = set;
+	}
+	
+	/**
+	 * @return the set or null when not built yet
+	 */
+	Set<M> getBuiltSet() {
+		return set;
+	}
+	
 	private Set<M> buildSet() {
 		Set<M> set = this.set;
 		if (set == null) {
-			synchronized (module) {
+			// the locks are taken along the dependency edges, hence no deadlock on DAG
+			synchronized (this) {
 				set = this.set;
 				if (set == null) {
 					ImmutableSet.Builder<M> builder = ImmutableSet.builder();
@@ -1,7 +1,11 @@
 package com.github.nill14.parsers.dependency.impl;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,62 +50,76 @@ public class DependencyTreePrinter<M> {
 		}).toList();
 	}
 	
-	private void visitRootNode(StringConsumer lineConsumer, M vertex, Set<M> visited) {
-		printLine(lineConsumer, vertex, "", "");
-		visitNode(lineConsumer, "", vertex, visited);
+	/**
+	 * The dependencies of a vertex being printed along with the length of their prefix
+	 */
+	private static final class Frame<M> {
+		private final Iterator<M> dependencies;
+		private final int prefixLength;
+
+		public Frame(Iterator<M> dependencies, int prefixLength) {
+			this.dependencies = dependencies;
+			this.prefixLength = prefixLength;
+		}
+	}
+	
+	/**
+	 * Visits the tree depth-first with an explicit stack, hence the depth is not limited by the thread stack.
+	 * The prefix is kept in a single buffer, each level appends its part to the prefix of the parent.
+	 */
+	private void visitRootNode(StringConsumer lineConsumer, M root, Set<M> visited) {
+		StringBuilder prefix = new StringBuilder();
+		StringBuilder line = new StringBuilder();
+		Deque<Frame<M>> stack = new ArrayDeque<>();
+		
+		printLine(lineConsumer, line, root, prefix, "");
+		visitNode(lineConsumer, line, prefix, root, visited, stack);
+		while (!stack.isEmpty()) {
+			Frame<M> frame = stack.peek();
+			if (!frame.dependencies.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			M vertex = frame.dependencies.next();
+			boolean last = !frame.dependencies.hasNext();
+			prefix.setLength(frame.prefixLength);
+			printLine(lineConsumer, line, vertex, prefix, last ? " \\- " : " +- ");
+			prefix.append(last ? "   " : " | ");
+			visitNode(lineConsumer, line, prefix, vertex, visited, stack);
+		}
 	}
 	
-	private void visitNode(StringConsumer lineConsumer, String prefix, M vertex, Set<M> visited) {
+	private void visitNode(StringConsumer lineConsumer, StringBuilder line, StringBuilder prefix, M vertex, 
+			Set<M> visited, Deque<Frame<M>> stack) {
 		Set<M> predecessors = dependencyGraph.getDirectDependencies(vertex);
 		if (filterTransitive && !predecessors.isEmpty() && visited.contains(vertex)) {
 			int count = dependencyGraph.getAllDependencies(vertex).size();
 			if (count > 1) {
 				// print skipped line when we can just print the line is overkill
-				printSkippedLine(lineConsumer, prefix, count);
+				printSkippedLine(lineConsumer, line, prefix, count);
 			} else {
-				printLine(lineConsumer, predecessors.iterator().next(), prefix, " \\- ");
+				printLine(lineConsumer, line, predecessors.iterator().next(), prefix, " \\- ");
 			}
 		} else {
 			visited.add(vertex);
-			int count = 0;
-			for (M n : predecessors) {
-				boolean last = ++count == predecessors.size();
-				if (last) {
-					printLine(lineConsumer, n, prefix, " \\- ");
-					visitNode(lineConsumer, prefix + "   ", n, visited);
-				} else {
-					printLine(lineConsumer, n, prefix, " +- ");
-					visitNode(lineConsumer, prefix + " | ", n, visited);
-				}
+			if (!predecessors.isEmpty()) {
+				stack.push(new Frame<>(predecessors.iterator(), prefix.length()));
 			}
 		}
 	}
 	
-	private void printLine(StringConsumer lineConsumer, M vertex, String prefix, String next) {
-		StringBuilder b = new StringBuilder();
-		b.append(prefix);
-		b.append(next);
-	
-		int rating = moduleRatings.get(vertex);
-		b.append(String.format("%s (%d)", vertex, rating));
-		try {
-			lineConsumer.process(b.toString());
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+	private void printLine(StringConsumer lineConsumer, StringBuilder line, M vertex, CharSequence prefix, String next) {
+		line.setLength(0);
+		line.append(prefix).append(next);
+		line.append(vertex).append(" (").append(moduleRatings.get(vertex).intValue()).append(')');
+		lineConsumer.process(line);
 	}
 
-	private void printSkippedLine(StringConsumer lineConsumer, String prefix, int count) {
-		StringBuilder b = new StringBuilder();
-		b.append(prefix);
-		b.append(" \\- ");
-	
-		b.append(String.format("... (skipped %d other dependencies)", count));
-		try {
-			lineConsumer.process(b.toString());
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+	private void printSkippedLine(StringConsumer lineConsumer, StringBuilder line, CharSequence prefix, int count) {
+		line.setLength(0);
+		line.append(prefix).append(" \\- ");
+		line.append("... (skipped ").append(count).append(" other dependencies)");
+		lineConsumer.process(line);
 	}
 	
 	private void processLines(StringConsumer lineConsumer) {
@@ -127,6 +145,21 @@ public class DependencyTreePrinter<M> {
 		processLines(new PrintStreamConsumer(p));
 	}
 	
+	/**
+	 * Writes the dependency tree line by line, nothing but the current line and prefix is buffered.
+	 * @param out The destination, e.g. a {@link java.io.BufferedWriter}
+	 * @throws IOException when writing fails
+	 */
+	public void toAppendable(Appendable out) throws IOException {
+		AppendableConsumer consumer = new AppendableConsumer(out);
+		try {
+			consumer.process("Dependency tree");
+			processLines(consumer);
+		} catch (AppendableConsumer.AppendException e) {
+			throw e.getCause();
+		}
+	}
+	
 	/**
 	 * Outputs dependency tree to {@link Logger#info(String)}
 	 */
@@ -0,0 +1,259 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.utils.LongestPathTopoSorter;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Measured module durations persisted between runs.
+ * <p>
+ * The modules are keyed by an identity string, {@link Object#toString()} by default.
+ * A new measurement is averaged with the previous one, so that a single outlier does not turn the order upside down.
+ * The profile is turned into module priorities proportional to the durations, the critical path gets 100000.
+ * The ranked graph has no edge cost, hence the module rankings are the sums of the durations along the longest paths
+ * and the historically slow chains start first.
+ * <p>
+ * The file format is a binary list of (key, nanos) pairs.
+ *
+ * @param <M> The modules
+ */
+public final class DurationProfile<M> {
+
+	private static final int MAGIC = 0x44505246; // DPRF
+	private static final int VERSION = 1;
+
+	/**
+	 * The priority of the critical path, the upper bound of a module priority.
+	 * The modules are its fractions, so that even the short modules are distinguished.
+	 */
+	private static final int CRITICAL_PATH_PRIORITY = 100000;
+
+	private final Function<? super M, String> keyFunction;
+	private final Map<String, Long> durations = Maps.newHashMap();
+
+	/**
+	 * @param keyFunction The function module -&gt; identity string
+	 */
+	public DurationProfile(Function<? super M, String> keyFunction) {
+		this.keyFunction = keyFunction;
+	}
+
+	/**
+	 * @param <M> The modules
+	 * @return a new profile keyed by module toString()
+	 */
+	public static <M> DurationProfile<M> create() {
+		return new DurationProfile<>(Functions.toStringFunction());
+	}
+
+	/**
+	 * Merges the profile stored in the file. A missing file is ignored.
+	 * @param file The profile file
+	 * @throws IOException when the file cannot be read or is not a profile
+	 */
+	public synchronized void load(File file) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a duration profile: " + file);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				durations.put(key, in.readLong());
+			}
+		}
+	}
+
+	/**
+	 * Replaces the file atomically, the previous content stays intact when writing fails.
+	 * @param file The profile file
+	 * @throws IOException when the file cannot be written
+	 */
+	public synchronized void save(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(durations.size());
+				for (Map.Entry<String, Long> entry : durations.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * @param module The module
+	 * @param nanos The measured duration
+	 */
+	public synchronized void record(M module, long nanos) {
+		String key = keyFunction.apply(module);
+		Long previous = durations.get(key);
+		durations.put(key, previous == null ? nanos : (previous + nanos) / 2);
+	}
+
+	/**
+	 * Records the run time of all the modules run during the walk
+	 * @param report The walk report
+	 */
+	public void record(WalkReport<M> report) {
+		for (M module : report.getModules()) {
+			if (report.getEndNanos(module) >= 0) {
+				record(module, report.getRunNanos(module));
+			}
+		}
+	}
+
+	/**
+	 * @param module The module
+	 * @return the profiled duration or -1 when not known
+	 */
+	public synchronized long getDurationNanos(M module) {
+		Long nanos = durations.get(keyFunction.apply(module));
+		return nanos == null ? -1 : nanos;
+	}
+
+	/**
+	 * The priorities are proportional to the durations, the sum of the priorities along the critical path is 100000.
+	 * The modules without a profile get the average duration.
+	 * @param dependencyGraph The graph of the modules
+	 * @return the priority map, empty when no module is profiled
+	 */
+	public synchronized Map<M, Integer> getPriorityMap(IDependencyGraph<M> dependencyGraph) {
+		Set<M> modules = dependencyGraph.getModules();
+		long sum = 0;
+		int count = 0;
+		for (M module : modules) {
+			Long nanos = durations.get(keyFunction.apply(module));
+			if (nanos != null) {
+				sum += nanos;
+				count++;
+			}
+		}
+
+		ImmutableMap.Builder<M, Integer> builder = ImmutableMap.builder();
+		if (count == 0) {
+			return builder.build();
+		}
+		long average = sum / count;
+		Map<M, Long> moduleDurations = Maps.newHashMapWithExpectedSize(modules.size());
+		for (M module : modules) {
+			Long nanos = durations.get(keyFunction.apply(module));
+			moduleDurations.put(module, nanos != null ? nanos : average);
+		}
+
+		long criticalPath = criticalPathNanos(dependencyGraph, moduleDurations);
+		if (criticalPath == 0) {
+			return builder.build();
+		}
+		for (M module : modules) {
+			long duration = moduleDurations.get(module);
+			builder.put(module, (int) Math.round((double) CRITICAL_PATH_PRIORITY * duration / criticalPath));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the longest sum of the durations along a path
+	 */
+	private static <M> long criticalPathNanos(IDependencyGraph<M> dependencyGraph, Map<M, Long> moduleDurations) {
+		DirectedGraph<M, GraphEdge<M>> graph = dependencyGraph.getGraph();
+		Map<M, Long> pathNanos = Maps.newHashMapWithExpectedSize(moduleDurations.size());
+		long max = 0;
+		// the dependants first
+		for (M module : Lists.reverse(dependencyGraph.getTopologicalOrder())) {
+			long path = 0;
+			for (M successor : graph.successors(module)) {
+				path = Math.max(path, pathNanos.get(successor));
+			}
+			path += moduleDurations.get(module);
+			pathNanos.put(module, path);
+			max = Math.max(max, path);
+		}
+		return max;
+	}
+
+	/**
+	 * The profiled durations replace the static execution priorities and the edges cost nothing,
+	 * so that a ranking is the weighted longest path. A graph without any profiled module keeps the static rankings.
+	 * The ranked graph keeps the optional features and the resource tags of a graph built by {@link DependencyGraphFactory}.
+	 * @param dependencyGraph The graph to be ranked
+	 * @return a graph with rankings based on weighted longest paths
+	 */
+	public IWalkableDependencyGraph<M> rank(IDependencyGraph<M> dependencyGraph) {
+		Map<M, Integer> priorityMap = getPriorityMap(dependencyGraph);
+		Set<DependencyGraphOption> options = EnumSet.noneOf(DependencyGraphOption.class);
+		SetMultimap<M, String> moduleResources = ImmutableSetMultimap.of();
+		if (dependencyGraph instanceof DependencyGraph) {
+			options = ((DependencyGraph<M>) dependencyGraph).getOptions();
+			moduleResources = ((DependencyGraph<M>) dependencyGraph).getModuleResources();
+		}
+		DirectedGraph<M, GraphEdge<M>> graph = dependencyGraph.getGraph();
+		try {
+			LinkedHashMap<M, Integer> moduleRankings = priorityMap.isEmpty() 
+					? new LongestPathTopoSorter<>(graph).getLongestPathMap()
+					: LongestPathTopoSorter.withZeroEdgeCost(graph).getLongestPathMap(Functions.forMap(priorityMap, 0));
+			return new DependencyGraph<>(graph, moduleRankings, options, moduleResources);
+		} catch (CyclicGraphException e) {
+			throw new IllegalArgumentException("The dependency graph is not acyclic", e);
+		}
+	}
+
+	/**
+	 * Walks the graph ranked by the profile and records the measured durations.
+	 * Nothing is recorded when the walk fails, the modules released before the failure might still be running.
+	 *
+	 * @param dependencyGraph The graph to be walked
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	public void walkGraph(IDependencyGraph<M> dependencyGraph, ExecutorService executor,
+			IConsumer<M> moduleConsumer, int parallelism) throws ExecutionException {
+
+		IWalkableDependencyGraph<M> rankedGraph = rank(dependencyGraph);
+		WalkRecorder<M> recorder = new WalkRecorder<>();
+		rankedGraph.walkGraph(executor, moduleConsumer, parallelism, recorder);
+		record(recorder.getReport());
+	}
+
+}
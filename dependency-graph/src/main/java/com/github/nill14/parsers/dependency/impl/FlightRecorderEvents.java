@@ -0,0 +1,347 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkListener;
+
+/**
+ * The Java Flight Recorder events, loaded by {@link GraphEvents} on runtimes with the jdk.jfr API.
+ * <p>
+ * The events are enabled by the default recording settings, e.g. by {@code jcmd <pid> JFR.start}.
+ * The event classes are not touched until the recorder is initialized by a recording, their registration
+ * costs hundreds of milliseconds. Then a disabled event costs a flag check, the module events are checked once per walk.
+ * The module events carry the walk id, the position in the topological order and the ranking.
+ * The queue depth of the running walks is sampled every second.
+ */
+final class FlightRecorderEvents extends GraphEvents {
+
+	private static final String CATEGORY = "Dependency Graph";
+
+	private final AtomicLong walkIds = new AtomicLong();
+	private final AtomicBoolean periodicEventAdded = new AtomicBoolean();
+	private final Set<RecordingWalkListener<?>> activeWalks =
+			Collections.newSetFromMap(new ConcurrentHashMap<RecordingWalkListener<?>, Boolean>());
+
+	@Override
+	Object beginPhase() {
+		if (!FlightRecorder.isInitialized()) {
+			return null;
+		}
+		ConstructionPhaseEvent event = new ConstructionPhaseEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	void endPhase(Object phase, String name, int moduleCount) {
+		if (phase != null) {
+			ConstructionPhaseEvent event = (ConstructionPhaseEvent) phase;
+			event.end();
+			if (event.shouldCommit()) {
+				event.phase = name;
+				event.moduleCount = moduleCount;
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	<M> IWalkListener<M> walkListener(IWalkListener<M> walkListener, int moduleCount) {
+		if (!FlightRecorder.isInitialized()) {
+			return walkListener;
+		}
+		if (periodicEventAdded.compareAndSet(false, true)) {
+			FlightRecorder.addPeriodicEvent(QueueDepthEvent.class, new Runnable() {
+				@Override
+				public void run() {
+					for (RecordingWalkListener<?> walk : activeWalks) {
+						walk.commitQueueDepth();
+					}
+				}
+			});
+		}
+		if (new WalkEvent().isEnabled() || new ModuleReleasedEvent().isEnabled() || new ModuleStartedEvent().isEnabled()
+				|| new ModuleFinishedEvent().isEnabled() || new QueueDepthEvent().isEnabled()) {
+			return new RecordingWalkListener<>(walkListener, walkIds.incrementAndGet(), moduleCount);
+		}
+		return walkListener;
+	}
+
+	/**
+	 * Commits the events of a walk and forwards the calls to the walk listener.
+	 * The arrays are indexed by the topological position in the whole graph, the events of a single module
+	 * come from one thread except for the release. The counts refer to the walked modules only.
+	 */
+	private final class RecordingWalkListener<M> implements IWalkListener<M> {
+
+		private final IWalkListener<M> delegate;
+		private final long walkId;
+		private final int moduleCount;
+		private final WalkEvent walkEvent = new WalkEvent();
+
+		private final AtomicInteger released = new AtomicInteger();
+		private final AtomicInteger started = new AtomicInteger();
+		private final AtomicInteger finished = new AtomicInteger();
+
+		private int[] rankings;
+		private long[] releasedNanos;
+		private ModuleFinishedEvent[] running;
+
+		public RecordingWalkListener(IWalkListener<M> delegate, long walkId, int moduleCount) {
+			this.delegate = delegate;
+			this.walkId = walkId;
+			this.moduleCount = moduleCount;
+		}
+
+		@Override
+		public void walkStarted(IDependencyGraph<M> dependencyGraph, int parallelism) {
+			List<M> order = dependencyGraph.getTopologicalOrder();
+			Map<M, Integer> moduleRankings = dependencyGraph.getModuleRankings();
+			int size = order.size();
+			rankings = new int[size];
+			for (int i = 0; i < size; i++) {
+				rankings[i] = moduleRankings.get(order.get(i));
+			}
+			releasedNanos = new long[size];
+			running = new ModuleFinishedEvent[size];
+
+			walkEvent.walkId = walkId;
+			walkEvent.moduleCount = moduleCount;
+			walkEvent.parallelism = parallelism;
+			walkEvent.begin();
+			activeWalks.add(this);
+			delegate.walkStarted(dependencyGraph, parallelism);
+		}
+
+		@Override
+		public void moduleReleased(int index, M module) {
+			releasedNanos[index] = System.nanoTime();
+			released.incrementAndGet();
+			ModuleReleasedEvent event = new ModuleReleasedEvent();
+			if (event.isEnabled()) {
+				event.walkId = walkId;
+				event.module = String.valueOf(module);
+				event.index = index;
+				event.ranking = rankings[index];
+				event.commit();
+			}
+			delegate.moduleReleased(index, module);
+		}
+
+		@Override
+		public void moduleStarted(int index, M module) {
+			started.incrementAndGet();
+			long waitTime = System.nanoTime() - releasedNanos[index];
+			ModuleStartedEvent event = new ModuleStartedEvent();
+			if (event.isEnabled()) {
+				event.walkId = walkId;
+				event.module = String.valueOf(module);
+				event.index = index;
+				event.ranking = rankings[index];
+				event.waitTime = waitTime;
+				event.commit();
+			}
+			ModuleFinishedEvent finishedEvent = new ModuleFinishedEvent();
+			if (finishedEvent.isEnabled()) {
+				finishedEvent.waitTime = waitTime;
+				finishedEvent.begin();
+				running[index] = finishedEvent;
+			}
+			delegate.moduleStarted(index, module);
+		}
+
+		@Override
+		public void moduleFinished(int index, M module, Exception failure) {
+			finished.incrementAndGet();
+			ModuleFinishedEvent event = running[index];
+			if (event != null) {
+				running[index] = null;
+				event.end();
+				if (event.shouldCommit()) {
+					event.walkId = walkId;
+					event.module = String.valueOf(module);
+					event.index = index;
+					event.ranking = rankings[index];
+					event.failed = failure != null;
+					event.failure = failure != null ? failure.toString() : null;
+					event.commit();
+				}
+			}
+			delegate.moduleFinished(index, module, failure);
+		}
+
+		@Override
+		public void walkFinished() {
+			activeWalks.remove(this);
+			walkEvent.end();
+			if (walkEvent.shouldCommit()) {
+				walkEvent.finishedCount = finished.get();
+				walkEvent.commit();
+			}
+			delegate.walkFinished();
+		}
+
+		void commitQueueDepth() {
+			QueueDepthEvent event = new QueueDepthEvent();
+			if (event.isEnabled()) {
+				int releasedCount = released.get();
+				int startedCount = started.get();
+				int finishedCount = finished.get();
+				event.walkId = walkId;
+				event.pending = moduleCount - releasedCount;
+				event.queued = releasedCount - startedCount;
+				event.running = startedCount - finishedCount;
+				event.finished = finishedCount;
+				event.commit();
+			}
+		}
+	}
+
+	@Name("com.github.nill14.parsers.ConstructionPhase")
+	@Label("Graph Construction Phase")
+	@Description("A phase of DependencyGraphFactory.newInstance")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class ConstructionPhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Module Count")
+		int moduleCount;
+	}
+
+	@Name("com.github.nill14.parsers.Walk")
+	@Label("Graph Walk")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class WalkEvent extends Event {
+		@Label("Walk Id")
+		long walkId;
+
+		@Label("Module Count")
+		int moduleCount;
+
+		@Label("Finished Modules")
+		int finishedCount;
+
+		@Label("Parallelism")
+		int parallelism;
+	}
+
+	@Name("com.github.nill14.parsers.ModuleReleased")
+	@Label("Module Released")
+	@Description("The module passed the parallelism limit and is submitted to the executor")
+	@Category({CATEGORY, "Modules"})
+	@StackTrace(false)
+	static final class ModuleReleasedEvent extends Event {
+		@Label("Walk Id")
+		long walkId;
+
+		@Label("Module")
+		String module;
+
+		@Label("Topological Index")
+		int index;
+
+		@Label("Ranking")
+		int ranking;
+	}
+
+	@Name("com.github.nill14.parsers.ModuleStarted")
+	@Label("Module Started")
+	@Category({CATEGORY, "Modules"})
+	@StackTrace(false)
+	static final class ModuleStartedEvent extends Event {
+		@Label("Walk Id")
+		long walkId;
+
+		@Label("Module")
+		String module;
+
+		@Label("Topological Index")
+		int index;
+
+		@Label("Ranking")
+		int ranking;
+
+		@Label("Wait Time")
+		@Description("From the release to the start, i.e. the time in the executor queue")
+		@Timespan
+		long waitTime;
+	}
+
+	@Name("com.github.nill14.parsers.ModuleFinished")
+	@Label("Module Finished")
+	@Description("The processing of the module, completed or failed")
+	@Category({CATEGORY, "Modules"})
+	@StackTrace(false)
+	static final class ModuleFinishedEvent extends Event {
+		@Label("Walk Id")
+		long walkId;
+
+		@Label("Module")
+		String module;
+
+		@Label("Topological Index")
+		int index;
+
+		@Label("Ranking")
+		int ranking;
+
+		@Label("Wait Time")
+		@Timespan
+		long waitTime;
+
+		@Label("Failed")
+		boolean failed;
+
+		@Label("Failure")
+		String failure;
+	}
+
+	@Name("com.github.nill14.parsers.WalkQueueDepth")
+	@Label("Walk Queue Depth")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Period("1 s")
+	static final class QueueDepthEvent extends Event {
+		@Label("Walk Id")
+		long walkId;
+
+		@Label("Pending")
+		@Description("The modules not released yet")
+		int pending;
+
+		@Label("Queued")
+		@Description("The released modules waiting in the executor queue")
+		int queued;
+
+		@Label("Running")
+		int running;
+
+		@Label("Finished")
+		int finished;
+	}
+
+}
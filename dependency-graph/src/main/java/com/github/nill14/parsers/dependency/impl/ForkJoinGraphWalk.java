@@ -0,0 +1,161 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+
+/**
+ * A graph walk without any dispatching thread. The task completing a module
+ * decrements the counters of the successors, forks the released ones
+ * and continues with the best ranked one on the same worker thread.
+ * The forked tasks stay in the local work queue until executed or stolen by an idle worker.
+ * <p>
+ * The parallelism is the parallelism of the pool. The ranking order is respected only locally,
+ * the walk favours locality over the global order.
+ *
+ * @param <M> Module
+ */
+final class ForkJoinGraphWalk<M> {
+
+	private final GraphIndex<M> index;
+	private final IConsumer<M> moduleConsumer;
+
+	private final AtomicIntegerArray blockers;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final CountDownLatch completion = new CountDownLatch(1);
+
+	private volatile ExecutionException exception;
+
+	/**
+	 * @param index The graph index with vertex ids assigned in topological order
+	 * @param moduleConsumer a processing closure
+	 */
+	public ForkJoinGraphWalk(GraphIndex<M> index, IConsumer<M> moduleConsumer) {
+		this.index = index;
+		this.moduleConsumer = moduleConsumer;
+
+		int size = index.size();
+		blockers = new AtomicIntegerArray(size);
+		for (int id = 0; id < size; id++) {
+			blockers.set(id, index.inDegree(id));
+		}
+	}
+
+	/**
+	 * Submits the modules without dependencies and waits for the walk to complete.
+	 * When called from a worker thread of the pool, the pool is allowed to compensate the blocked worker.
+	 * @param pool The pool executing the modules
+	 * @throws ExecutionException when the closure throws an exception or an error
+	 */
+	public void walk(ForkJoinPool pool) throws ExecutionException {
+		if (index.size() == 0) {
+			return;
+		}
+
+		// the extra pending count prevents completion while the roots are being submitted
+		pending.incrementAndGet();
+		for (int id = 0; id < index.size(); id++) {
+			if (index.inDegree(id) == 0) {
+				pending.incrementAndGet();
+				pool.execute(new ModuleTask(id));
+			}
+		}
+		onTaskExit();
+
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() throws InterruptedException {
+					completion.await();
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return completion.getCount() == 0;
+				}
+			});
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private void onTaskExit() {
+		if (pending.decrementAndGet() == 0) {
+			completion.countDown();
+		}
+	}
+
+	/**
+	 * Any throwable fails the walk, an error must not leave the dependants silently unprocessed
+	 */
+	private synchronized void onFailure(Throwable e) {
+		if (exception == null) {
+			exception = new ExecutionException(e);
+		} else {
+			exception.addSuppressed(e);
+		}
+	}
+
+	private final class ModuleTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int first;
+
+		public ModuleTask(int id) {
+			this.first = id;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				int id = first;
+				while (id >= 0 && exception == null) {
+					id = process(id);
+				}
+			} catch (Throwable e) {
+				onFailure(e);
+			} finally {
+				onTaskExit();
+			}
+		}
+
+		/**
+		 * @return the best ranked released successor or -1
+		 */
+		private int process(int id) throws Exception {
+			moduleConsumer.process(index.vertex(id));
+
+			// ids are assigned in ranking order, the lowest id is continued with
+			int next = -1;
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				int successor = index.successor(id, i);
+				if (blockers.decrementAndGet(successor) == 0) {
+					if (next < 0) {
+						next = successor;
+					} else {
+						fork(Math.max(next, successor));
+						next = Math.min(next, successor);
+					}
+				}
+			}
+			return next;
+		}
+
+		private void fork(int id) {
+			pending.incrementAndGet();
+			new ModuleTask(id).fork();
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nill14.parsers.dependency.IWalkListener;
+
+/**
+ * The diagnostic events of the graph construction and walks.
+ * <p>
+ * The events are recorded by Java Flight Recorder, see {@code FlightRecorderEvents}.
+ * The library runs on Java 7 as well, hence the recorder events are loaded without compile time dependency
+ * only when the runtime provides the jdk.jfr API. Otherwise this no-op implementation is used.
+ * The recorder events are compiled only by JDK 11 or newer, see the jfr profile of the build.
+ */
+class GraphEvents {
+
+	private static final Logger log = LoggerFactory.getLogger(GraphEvents.class);
+
+	private static final GraphEvents instance = load();
+
+	/**
+	 * @return the recorder events or no-op events when not supported
+	 */
+	static GraphEvents getInstance() {
+		return instance;
+	}
+
+	private static GraphEvents load() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder");
+			Class<?> type = Class.forName(GraphEvents.class.getPackage().getName() + ".FlightRecorderEvents");
+			return (GraphEvents) type.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			log.debug("Java Flight Recorder events are not supported");
+			return new GraphEvents();
+		}
+	}
+
+	/**
+	 * @return a token of the started construction phase or null when not recorded
+	 */
+	Object beginPhase() {
+		return null;
+	}
+
+	/**
+	 * @param phase The token of {@link #beginPhase()}
+	 * @param name The phase name
+	 * @param moduleCount The count of the modules
+	 */
+	void endPhase(Object phase, String name, int moduleCount) {
+	}
+
+	/**
+	 * Checked once per walk, the walks started before the recording are not recorded.
+	 * @param <M> The modules
+	 * @param walkListener The listener of the walk
+	 * @param moduleCount The count of the walked modules, less than the graph size when walking the closure of targets
+	 * @return a listener recording the walk events and calling the given one, or the given one when not recorded
+	 */
+	<M> IWalkListener<M> walkListener(IWalkListener<M> walkListener, int moduleCount) {
+		return walkListener;
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+
+/**
+ * Writes the dependency graph in the DOT (Graphviz) and GraphML formats.
+ * <p>
+ * The modules are written in the topological order, the node ids are their positions,
+ * the labels are given by a label function, {@link Object#toString()} by default.
+ * An edge leads from the dependency to the dependant module.
+ * The output is streamed to the {@link Appendable}, just the dense module ids are kept in memory,
+ * hence graphs with millions of edges can be written.
+ *
+ * @param <M> The modules
+ */
+public class GraphExporter<M> {
+
+	private final Map<M, Integer> moduleRankings;
+	private final GraphIndex<M> index;
+	private final Function<? super M, String> labelFunction;
+
+	public GraphExporter(IDependencyGraph<M> dependencyGraph) {
+		this(dependencyGraph, Functions.toStringFunction());
+	}
+
+	/**
+	 * @param dependencyGraph The graph to be written
+	 * @param labelFunction The function module -&gt; label
+	 */
+	public GraphExporter(IDependencyGraph<M> dependencyGraph, Function<? super M, String> labelFunction) {
+		this.moduleRankings = dependencyGraph.getModuleRankings();
+		this.index = GraphIndex.of(dependencyGraph.getGraph(), dependencyGraph.getTopologicalOrder());
+		this.labelFunction = labelFunction;
+	}
+
+	/**
+	 * Writes the graph in the DOT language
+	 * @param out The destination, e.g. a {@link java.io.BufferedWriter}
+	 * @throws IOException when writing fails
+	 */
+	public void toDot(Appendable out) throws IOException {
+		String lineSeparator = System.lineSeparator();
+		out.append("digraph dependencies {").append(lineSeparator);
+		for (int id = 0; id < index.size(); id++) {
+			M module = index.vertex(id);
+			out.append("  n").append(Integer.toString(id)).append(" [label=\"");
+			appendDotEscaped(out, labelFunction.apply(module));
+			out.append(" (").append(Integer.toString(moduleRankings.get(module))).append(")\"];").append(lineSeparator);
+		}
+		for (int id = 0; id < index.size(); id++) {
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				out.append("  n").append(Integer.toString(id))
+					.append(" -> n").append(Integer.toString(index.successor(id, i)))
+					.append(';').append(lineSeparator);
+			}
+		}
+		out.append('}').append(lineSeparator);
+	}
+
+	/**
+	 * Writes the graph as a GraphML document with the label and the ranking of each module
+	 * @param out The destination, e.g. a {@link java.io.BufferedWriter} of UTF-8
+	 * @throws IOException when writing fails
+	 */
+	public void toGraphML(Appendable out) throws IOException {
+		String lineSeparator = System.lineSeparator();
+		out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>").append(lineSeparator);
+		out.append("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">").append(lineSeparator);
+		out.append("  <key id=\"label\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>").append(lineSeparator);
+		out.append("  <key id=\"ranking\" for=\"node\" attr.name=\"ranking\" attr.type=\"int\"/>").append(lineSeparator);
+		out.append("  <graph id=\"dependencies\" edgedefault=\"directed\">").append(lineSeparator);
+		for (int id = 0; id < index.size(); id++) {
+			M module = index.vertex(id);
+			out.append("    <node id=\"n").append(Integer.toString(id)).append("\"><data key=\"label\">");
+			appendXmlEscaped(out, labelFunction.apply(module));
+			out.append("</data><data key=\"ranking\">").append(Integer.toString(moduleRankings.get(module)))
+				.append("</data></node>").append(lineSeparator);
+		}
+		for (int id = 0; id < index.size(); id++) {
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				out.append("    <edge source=\"n").append(Integer.toString(id))
+					.append("\" target=\"n").append(Integer.toString(index.successor(id, i)))
+					.append("\"/>").append(lineSeparator);
+			}
+		}
+		out.append("  </graph>").append(lineSeparator);
+		out.append("</graphml>").append(lineSeparator);
+	}
+
+	private static void appendDotEscaped(Appendable out, String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	private static void appendXmlEscaped(Appendable out, String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '&':
+				out.append("&amp;");
+				break;
+			case '"':
+				out.append("&quot;");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
+
+}
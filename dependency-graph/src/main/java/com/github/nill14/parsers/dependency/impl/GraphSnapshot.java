@@ -0,0 +1,301 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.zip.CRC32;
+
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IResourceDescriptor;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A binary snapshot of a built {@link IDependencyGraph} for a fast startup.
+ * Reading a snapshot skips the graph construction, the topological sort and the rankings,
+ * just the modules are resolved and the edge objects created.
+ * <p>
+ * The modules are stored as keys: the key function maps a module to its key when writing,
+ * the module function maps the key back when reading. The file is memory-mapped for reading
+ * and the content is validated by a CRC-32 checksum. A snapshot is written atomically,
+ * the previous content stays intact when writing fails.
+ * <p>
+ * The snapshot is valid only for the same modules and descriptors. The caller passes a fingerprint of them,
+ * e.g. by {@link #fingerprint(Collection, Function, Function)}, and reading rejects a snapshot of another fingerprint.
+ * <p>
+ * The layout (big-endian) is a header of magic, version, fingerprint and checksum of the rest, i.e. of the module count,
+ * the edge count, the successor offsets and the successor ids (compressed sparse row form over topological ids),
+ * the module rankings and finally the module keys with the resource tags.
+ */
+public final class GraphSnapshot {
+
+	private static final int MAGIC = 0x44474753; // DGGS
+	private static final int VERSION = 3;
+	private static final int HEADER_SIZE = 4 * 4 + 8 + 8;
+
+	private GraphSnapshot() {
+	}
+
+	/**
+	 * The fingerprint of the graph inputs, i.e. the module keys and their dependencies, providers,
+	 * execution priorities and resource tags. The dependency keys are hashed by {@link Object#toString()},
+	 * the module order does not matter.
+	 * @param <K> The keys used to establish connection between modules.
+	 * @param <M> The modules
+	 * @param modules The dependency units
+	 * @param adapterFunction The function module -&gt; {@link IDependencyDescriptor}
+	 * @param keyFunction The function module -&gt; identity string, stable between runs
+	 * @return the fingerprint for {@link #write(IDependencyGraph, Function, long, File)}
+	 */
+	public static <K, M> long fingerprint(Collection<M> modules, 
+			Function<M, ? extends IDependencyDescriptor<K>> adapterFunction, Function<? super M, String> keyFunction) {
+		
+		SortedMap<String, M> byKey = Maps.newTreeMap();
+		for (M module : modules) {
+			byKey.put(keyFunction.apply(module), module);
+		}
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putInt(byKey.size());
+		for (Map.Entry<String, M> entry : byKey.entrySet()) {
+			IDependencyDescriptor<K> descriptor = adapterFunction.apply(entry.getValue());
+			putString(hasher, entry.getKey());
+			hasher.putInt(descriptor.getExecutionPriority());
+			putStrings(hasher, descriptor.getRequiredDependencies());
+			putStrings(hasher, descriptor.getOptionalDependencies());
+			putStrings(hasher, descriptor.getOptionalProviders());
+			putStrings(hasher, descriptor instanceof IResourceDescriptor 
+					? ((IResourceDescriptor) descriptor).getResources() : ImmutableSet.<String>of());
+		}
+		return hasher.hash().asLong();
+	}
+
+	private static void putStrings(Hasher hasher, Set<?> values) {
+		List<String> strings = Lists.newArrayListWithCapacity(values.size());
+		for (Object value : values) {
+			strings.add(String.valueOf(value));
+		}
+		Collections.sort(strings);
+		hasher.putInt(strings.size());
+		for (String string : strings) {
+			putString(hasher, string);
+		}
+	}
+
+	private static void putString(Hasher hasher, String value) {
+		// the length keeps the neighbouring strings apart
+		hasher.putInt(value.length());
+		hasher.putString(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param <M> The modules
+	 * @param dependencyGraph The graph to be stored
+	 * @param keyFunction The function module -&gt; identity string, stable between runs
+	 * @param fingerprint The fingerprint of the modules the graph is built from, see {@link #fingerprint(Collection, Function, Function)}
+	 * @param file The snapshot file
+	 * @throws IOException when the file cannot be written
+	 */
+	public static <M> void write(IDependencyGraph<M> dependencyGraph, Function<? super M, String> keyFunction,
+			long fingerprint, File file) throws IOException {
+
+		List<M> order = dependencyGraph.getTopologicalOrder();
+		GraphIndex<M> index = GraphIndex.of(dependencyGraph.getGraph(), order);
+		Map<M, Integer> rankings = dependencyGraph.getModuleRankings();
+		SetMultimap<M, String> resources = dependencyGraph instanceof DependencyGraph
+				? ((DependencyGraph<M>) dependencyGraph).getModuleResources() : ImmutableSetMultimap.<M, String>of();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+		int offset = 0;
+		payload.writeInt(offset);
+		for (int id = 0; id < index.size(); id++) {
+			offset += index.outDegree(id);
+			payload.writeInt(offset);
+		}
+		for (int id = 0; id < index.size(); id++) {
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				payload.writeInt(index.successor(id, i));
+			}
+		}
+		for (int id = 0; id < index.size(); id++) {
+			payload.writeInt(rankings.get(index.vertex(id)));
+		}
+		for (int id = 0; id < index.size(); id++) {
+			M module = index.vertex(id);
+			writeString(payload, keyFunction.apply(module));
+			Set<String> tags = resources.get(module);
+			payload.writeInt(tags.size());
+			for (String tag : tags) {
+				writeString(payload, tag);
+			}
+		}
+		payload.flush();
+		byte[] data = bytes.toByteArray();
+		ByteBuffer counts = ByteBuffer.allocate(8).putInt(index.size()).putInt(index.edgeCount());
+		CRC32 checksum = new CRC32();
+		checksum.update(counts.array(), 0, 8);
+		checksum.update(data, 0, data.length);
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(fingerprint);
+				out.writeLong(checksum.getValue());
+				out.writeInt(index.size());
+				out.writeInt(index.edgeCount());
+				out.write(data);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @param <M> The modules
+	 * @param file The snapshot file
+	 * @param moduleFunction The function identity string -&gt; module, returning null for an unknown key
+	 * @param fingerprint The fingerprint of the current modules, see {@link #fingerprint(Collection, Function, Function)}
+	 * @param options The optional features
+	 * @return the restored graph
+	 * @throws IOException when the file cannot be read, is corrupted, is stale (of another fingerprint) 
+	 * or refers to an unknown module, i.e. the graph is to be built from the modules
+	 */
+	public static <M> IWalkableDependencyGraph<M> read(File file, Function<String, ? extends M> moduleFunction,
+			long fingerprint, DependencyGraphOption... options) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Not a graph snapshot: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Not a graph snapshot: " + file);
+			}
+			if (buffer.getLong() != fingerprint) {
+				throw new IOException("Stale graph snapshot, the modules have changed: " + file);
+			}
+			// the counts are covered by the checksum, a corrupted count must not allocate arrays
+			if (buffer.getLong() != checksum(buffer.slice())) {
+				throw new IOException("Corrupted graph snapshot: " + file);
+			}
+			int size = buffer.getInt();
+			int edgeCount = buffer.getInt();
+
+			try {
+				return read(buffer, size, edgeCount, moduleFunction, DependencyGraphFactory.toSet(options));
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("Corrupted graph snapshot: " + file, e);
+			}
+		}
+	}
+
+	private static <M> DependencyGraph<M> read(ByteBuffer buffer, int size, int edgeCount,
+			Function<String, ? extends M> moduleFunction, Set<DependencyGraphOption> options) throws IOException {
+
+		int[] offsets = readInts(buffer, size + 1);
+		int[] successors = readInts(buffer, edgeCount);
+		int[] rankings = readInts(buffer, size);
+
+		List<M> modules = Lists.newArrayListWithCapacity(size);
+		LinkedHashMap<M, Integer> moduleRankings = Maps.newLinkedHashMap();
+		ImmutableSetMultimap.Builder<M, String> resources = ImmutableSetMultimap.builder();
+		for (int id = 0; id < size; id++) {
+			String key = readString(buffer);
+			M module = moduleFunction.apply(key);
+			if (module == null) {
+				throw new IOException("The snapshot refers to an unknown module: " + key);
+			}
+			modules.add(module);
+			moduleRankings.put(module, rankings[id]);
+			for (int i = 0, count = buffer.getInt(); i < count; i++) {
+				resources.put(module, readString(buffer));
+			}
+		}
+		if (moduleRankings.size() != size) {
+			throw new IOException("The snapshot refers to a module by more keys");
+		}
+		if (buffer.hasRemaining()) {
+			throw new IllegalArgumentException("Unexpected bytes after the module keys");
+		}
+
+		GraphIndex<M> index = GraphIndex.fromAdjacency(modules, offsets, successors);
+		for (int id = 0; id < size; id++) {
+			// the successors are sorted, the first one is enough
+			if (index.outDegree(id) > 0 && index.successor(id, 0) <= id) {
+				throw new IllegalArgumentException("Not topologically ordered: " + index.vertex(id));
+			}
+		}
+		return new DependencyGraph<>(index, moduleRankings, options, resources.build());
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int count) {
+		if (count < 0 || count * 4L > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid count: " + count);
+		}
+		int[] result = new int[count];
+		buffer.asIntBuffer().get(result);
+		buffer.position(buffer.position() + count * 4);
+		return result;
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long checksum(ByteBuffer buffer) {
+		CRC32 checksum = new CRC32();
+		byte[] chunk = new byte[8192];
+		while (buffer.hasRemaining()) {
+			int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			checksum.update(chunk, 0, length);
+		}
+		return checksum.getValue();
+	}
+
+}
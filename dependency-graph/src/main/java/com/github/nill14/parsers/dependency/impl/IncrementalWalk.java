@@ -0,0 +1,219 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import com.github.nill14.parsers.dependency.ICachingConsumer;
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A walk skipping the modules whose inputs have not changed since they were processed, similarly to a build cache.
+ * <p>
+ * The input of a module is its own fingerprint and the fingerprints of all its transitive dependencies.
+ * They are combined bottom-up: the input hash of a module covers its fingerprint
+ * and the input hashes of the direct dependencies, hence any upstream change changes the hash.
+ * A module is processed when its input hash differs from the cached one, otherwise the cached output is restored.
+ * Skipped modules complete immediately and release their dependants.
+ * <p>
+ * The cache is updated by each successfully processed module, also when the walk fails.
+ * It is persisted by {@link #save(File)} and loaded by {@link #load(File)}.
+ *
+ * @param <M> The modules
+ */
+public final class IncrementalWalk<M> {
+
+	private static final int MAGIC = 0x44474943; // DGIC
+	private static final int VERSION = 1;
+
+	private final IDependencyGraph<M> dependencyGraph;
+	private final Function<? super M, String> keyFunction;
+	private final Function<? super M, String> fingerprintFunction;
+
+	private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+	private volatile Set<M> skipped = ImmutableSet.of();
+
+	/**
+	 * @param dependencyGraph The graph to be walked
+	 * @param keyFunction The function module -&gt; identity string, stable between runs
+	 * @param fingerprintFunction The function module -&gt; fingerprint of the module inputs,
+	 * e.g. the hash of its configuration
+	 */
+	public IncrementalWalk(IDependencyGraph<M> dependencyGraph, Function<? super M, String> keyFunction,
+			Function<? super M, String> fingerprintFunction) {
+		this.dependencyGraph = dependencyGraph;
+		this.keyFunction = keyFunction;
+		this.fingerprintFunction = fingerprintFunction;
+	}
+
+	private static final class Entry {
+		private final String inputHash;
+		private final byte[] output;
+
+		public Entry(String inputHash, byte[] output) {
+			this.inputHash = inputHash;
+			this.output = output;
+		}
+	}
+
+	/**
+	 * Merges the cache stored in the file. A missing file is ignored.
+	 * @param file The cache file
+	 * @throws IOException when the file cannot be read or is not a cache
+	 */
+	public void load(File file) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a walk cache: " + file);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				String inputHash = in.readUTF();
+				int length = in.readInt();
+				byte[] output = null;
+				if (length >= 0) {
+					output = new byte[length];
+					in.readFully(output);
+				}
+				cache.put(key, new Entry(inputHash, output));
+			}
+		}
+	}
+
+	/**
+	 * Replaces the file atomically, the previous content stays intact when writing fails.
+	 * @param file The cache file
+	 * @throws IOException when the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		Map<String, Entry> entries = Maps.newHashMap(cache);
+		File parent = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(entries.size());
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeUTF(entry.getValue().inputHash);
+					byte[] output = entry.getValue().output;
+					out.writeInt(output == null ? -1 : output.length);
+					if (output != null) {
+						out.write(output);
+					}
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * @return the input hashes of all modules, computed in topological order
+	 */
+	private Map<M, String> inputHashes() {
+		Map<M, String> hashes = Maps.newHashMap();
+		for (M module : dependencyGraph.getTopologicalOrder()) {
+			// the dependencies sorted by key, so that the hash does not depend on the set order
+			Map<String, String> dependencies = Maps.newTreeMap();
+			for (M dependency : dependencyGraph.getDirectDependencies(module)) {
+				dependencies.put(keyFunction.apply(dependency), hashes.get(dependency));
+			}
+
+			Hasher hasher = Hashing.sha256().newHasher();
+			hasher.putString(fingerprintFunction.apply(module), StandardCharsets.UTF_8);
+			for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+				hasher.putByte((byte) 0);
+				hasher.putString(dependency.getKey(), StandardCharsets.UTF_8);
+				hasher.putString(dependency.getValue(), StandardCharsets.UTF_8);
+			}
+			hashes.put(module, hasher.hash().toString());
+		}
+		return hashes;
+	}
+
+	/**
+	 * Walks the graph, see {@link IDependencyGraph#walkGraph(ExecutorService, IConsumer, int)}.
+	 * The cache entries of the modules no longer in the graph are dropped.
+	 *
+	 * @param executor an executor to be used for executing the closure
+	 * @param moduleConsumer a processing closure
+	 * @param parallelism the maximum amount of concurrently scheduled tasks
+	 * @throws ExecutionException when the closure throws an exception
+	 */
+	public void walkGraph(ExecutorService executor, final ICachingConsumer<M> moduleConsumer, int parallelism)
+			throws ExecutionException {
+
+		final Map<M, String> inputHashes = inputHashes();
+		Set<String> keys = Sets.newHashSet();
+		for (M module : dependencyGraph.getModules()) {
+			keys.add(keyFunction.apply(module));
+		}
+		cache.keySet().retainAll(keys);
+
+		final Set<M> skipped = Collections.newSetFromMap(new ConcurrentHashMap<M, Boolean>());
+		try {
+			dependencyGraph.walkGraph(executor, new IConsumer<M>() {
+				@Override
+				public void process(M module) throws Exception {
+					String key = keyFunction.apply(module);
+					String inputHash = inputHashes.get(module);
+					Entry entry = cache.get(key);
+					if (entry != null && entry.inputHash.equals(inputHash)) {
+						moduleConsumer.restore(module, entry.output);
+						skipped.add(module);
+					} else {
+						// a failure must not leave the stale entry behind
+						cache.remove(key);
+						byte[] output = moduleConsumer.process(module);
+						cache.put(key, new Entry(inputHash, output));
+					}
+				}
+			}, parallelism);
+		} finally {
+			this.skipped = ImmutableSet.copyOf(skipped);
+		}
+	}
+
+	/**
+	 * @return the modules skipped by the last walk, in the topological order
+	 */
+	public Set<M> getSkippedModules() {
+		Set<M> skipped = this.skipped;
+		ImmutableSet.Builder<M> builder = ImmutableSet.builder();
+		for (M module : dependencyGraph.getTopologicalOrder()) {
+			if (skipped.contains(module)) {
+				builder.add(module);
+			}
+		}
+		return builder.build();
+	}
+
+}
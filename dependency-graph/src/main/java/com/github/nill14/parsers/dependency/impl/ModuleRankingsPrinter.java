@@ -1,5 +1,6 @@
 package com.github.nill14.parsers.dependency.impl;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
 import java.util.Map;
@@ -22,19 +23,14 @@ public class ModuleRankingsPrinter<M> {
 	}
 	
 	
-	private String printLine(M vertex, boolean executionBit, int ranking) {
-		if (executionBit) {
-			return String.format("* %s (%d)", vertex, ranking);
-		} else {
-			return String.format("  %s (%d)", vertex, ranking);
-		}
-	}
-	
 	private void processLines(StringConsumer lineConsumer) {
+		StringBuilder line = new StringBuilder();
 		for (M node : topologicalOrder) {
 			boolean executionBit = dependencyGraph.getDirectDependencies(node).isEmpty();
 			int ranking = moduleRankings.get(node);
-			lineConsumer.process(printLine(node, executionBit, ranking));
+			line.setLength(0);
+			line.append(executionBit ? "* " : "  ").append(node).append(" (").append(ranking).append(')');
+			lineConsumer.process(line);
 		}
 	}
 	
@@ -53,6 +49,21 @@ public class ModuleRankingsPrinter<M> {
 		processLines(new PrintStreamConsumer(p));
 	}
 	
+	/**
+	 * Writes module rankings line by line
+	 * @param out The destination, e.g. a {@link java.io.BufferedWriter}
+	 * @throws IOException when writing fails
+	 */
+	public void toAppendable(Appendable out) throws IOException {
+		AppendableConsumer consumer = new AppendableConsumer(out);
+		try {
+			consumer.process("Module Rankings");
+			processLines(consumer);
+		} catch (AppendableConsumer.AppendException e) {
+			throw e.getCause();
+		}
+	}
+	
 	/**
 	 * Outputs module rankings to {@link Logger#info(String)}
 	 */
@@ -0,0 +1,463 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IMutableDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.EvaluatedGraphEdge;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+
+/**
+ * The topological order is maintained by the dynamic algorithm of Pearce and Kelly:
+ * an edge x -&gt; y violating the order only reorders the vertices between y and x
+ * reachable from y or reaching x. The rankings are recalculated for the changed vertices
+ * and propagated to the predecessors as long as they change.
+ * <p>
+ * Removed modules leave holes in the order, which is compacted when half empty.
+ *
+ * @param <K> The keys used to establish connection between modules.
+ * @param <M> The modules
+ */
+class MutableDependencyGraph<K, M> implements IMutableDependencyGraph<M> {
+
+	private final Function<M, ? extends IDependencyDescriptor<K>> adapterFunction;
+	private final Set<DependencyGraphOption> options;
+
+	private final Map<M, IDependencyDescriptor<K>> descriptors = Maps.newHashMap();
+	private final SetMultimap<K, M> consumers = HashMultimap.create();
+	private final SetMultimap<K, M> consumersOpt = HashMultimap.create();
+	private final SetMultimap<K, M> producers = HashMultimap.create();
+
+	private final Map<M, Set<M>> successors = Maps.newHashMap();
+	private final Map<M, Set<M>> predecessors = Maps.newHashMap();
+
+	private final List<M> order = Lists.newArrayList();
+	private final Map<M, Integer> ord = Maps.newHashMap();
+	private int holes = 0;
+	private final Map<M, Integer> rankings = Maps.newHashMap();
+
+	// the modules whose predecessors have changed since the last snapshot
+	private final Set<M> touched = Sets.newHashSet();
+	private long version = 0;
+	private DependencyGraph<M> snapshot;
+	private long snapshotVersion;
+
+	private final Comparator<M> byOrdDescending = new Comparator<M>() {
+		@Override
+		public int compare(M o1, M o2) {
+			return Integer.compare(ord.get(o2), ord.get(o1));
+		}
+	};
+
+	private final Comparator<M> byOrd = Collections.reverseOrder(byOrdDescending);
+
+	private final Comparator<M> byRankingDescending = new Comparator<M>() {
+		@Override
+		public int compare(M o1, M o2) {
+			return Integer.compare(rankings.get(o2), rankings.get(o1));
+		}
+	};
+
+	public MutableDependencyGraph(Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction,
+			Set<DependencyGraphOption> options) throws UnsatisfiedDependencyException, CyclicGraphException {
+		this.adapterFunction = adapterFunction;
+		this.options = options;
+
+		for (M module : modules) {
+			register(module, adapterFunction.apply(module));
+		}
+
+		Function<M, IDependencyDescriptor<K>> f = Functions.forMap(descriptors);
+		DirectedGraph<M, GraphEdge<M>> graph = DependencyGraphFactory.newGraph(modules, f, options);
+		snapshot = new DependencyGraph<>(graph, Functions.compose(new Function<IDependencyDescriptor<K>, Integer>() {
+			@Override
+			public Integer apply(IDependencyDescriptor<K> input) {
+				return input.getExecutionPriority();
+			}
+		}, f), options, DependencyGraphFactory.newResourceMap(modules, f));
+		snapshotVersion = version;
+
+		for (GraphEdge<M> edge : graph.edges()) {
+			successors.get(edge.source()).add(edge.target());
+			predecessors.get(edge.target()).add(edge.source());
+		}
+		for (M module : snapshot.getTopologicalOrder()) {
+			ord.put(module, order.size());
+			order.add(module);
+		}
+		rankings.putAll(snapshot.getModuleRankings());
+	}
+
+	@Override
+	public synchronized void addModules(Collection<M> modules) throws UnsatisfiedDependencyException, CyclicGraphException {
+		List<M> added = Lists.newArrayList();
+		for (M module : modules) {
+			if (!descriptors.containsKey(module)) {
+				register(module, adapterFunction.apply(module));
+				ord.put(module, order.size());
+				order.add(module);
+				added.add(module);
+			}
+		}
+
+		try {
+			for (M module : added) {
+				for (K key : descriptors.get(module).getRequiredDependencies()) {
+					if (producers.get(key).isEmpty()) {
+						throw new UnsatisfiedDependencyException(module, key);
+					}
+				}
+			}
+			for (M module : added) {
+				connect(module);
+			}
+		} catch (UnsatisfiedDependencyException | CyclicGraphException e) {
+			detach(added);
+			throw e;
+		}
+
+		Set<M> changed = Sets.newHashSet(added);
+		for (M module : added) {
+			changed.addAll(predecessors.get(module));
+		}
+		updateRankings(changed);
+		touched.addAll(added);
+		version++;
+	}
+
+	@Override
+	public void addModule(M module) throws UnsatisfiedDependencyException, CyclicGraphException {
+		addModules(Collections.singleton(module));
+	}
+
+	@Override
+	public synchronized void removeModules(Collection<M> modules) throws UnsatisfiedDependencyException {
+		Set<M> removed = Sets.newHashSet();
+		for (M module : modules) {
+			if (descriptors.containsKey(module)) {
+				removed.add(module);
+			}
+		}
+
+		for (M module : removed) {
+			for (K key : descriptors.get(module).getOptionalProviders()) {
+				if (removed.containsAll(producers.get(key))) {
+					for (M consumer : consumers.get(key)) {
+						if (!removed.contains(consumer)) {
+							throw new UnsatisfiedDependencyException(consumer, key);
+						}
+					}
+				}
+			}
+		}
+
+		if (!removed.isEmpty()) {
+			updateRankings(detach(removed));
+			version++;
+		}
+	}
+
+	@Override
+	public void removeModule(M module) throws UnsatisfiedDependencyException {
+		removeModules(Collections.singleton(module));
+	}
+
+	@Override
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	@Override
+	public synchronized IWalkableDependencyGraph<M> snapshot() {
+		if (snapshotVersion != version) {
+			List<M> modules = Lists.newArrayListWithCapacity(order.size() - holes);
+			for (M module : order) {
+				if (module != null) {
+					modules.add(module);
+				}
+			}
+			// stable, the ties keep the topological order
+			Collections.sort(modules, byRankingDescending);
+
+			LinkedHashMap<M, Integer> moduleRankings = new LinkedHashMap<>();
+			ImmutableSet.Builder<GraphEdge<M>> edges = ImmutableSet.builder();
+			for (M module : modules) {
+				moduleRankings.put(module, rankings.get(module));
+				for (M successor : successors.get(module)) {
+					edges.add(EvaluatedGraphEdge.edge(module, successor));
+				}
+			}
+
+			DirectedGraph<M, GraphEdge<M>> graph = CompactDirectedGraph.<M, GraphEdge<M>>builder()
+					.nodes(moduleRankings.keySet())
+					.edges(edges.build())
+					.build();
+			DependencyGraph<M> next = new DependencyGraph<>(graph, moduleRankings, options,
+					DependencyGraphFactory.newResourceMap(modules, Functions.forMap(descriptors)));
+			next.retainDependencySets(snapshot, downstream(touched));
+
+			touched.clear();
+			snapshot = next;
+			snapshotVersion = version;
+		}
+		return snapshot;
+	}
+
+	private void register(M module, IDependencyDescriptor<K> descriptor) {
+		descriptors.put(module, descriptor);
+		for (K key : descriptor.getRequiredDependencies()) {
+			consumers.put(key, module);
+		}
+		for (K key : descriptor.getOptionalDependencies()) {
+			consumersOpt.put(key, module);
+		}
+		for (K key : descriptor.getOptionalProviders()) {
+			producers.put(key, module);
+		}
+		successors.put(module, Sets.<M>newLinkedHashSet());
+		predecessors.put(module, Sets.<M>newLinkedHashSet());
+	}
+
+	private void connect(M module) throws CyclicGraphException {
+		IDependencyDescriptor<K> descriptor = descriptors.get(module);
+		for (K key : Iterables.concat(descriptor.getRequiredDependencies(), descriptor.getOptionalDependencies())) {
+			for (M source : producers.get(key)) {
+				if (!source.equals(module)) { //avoid self dependencies
+					addEdge(source, module);
+				}
+			}
+		}
+
+		for (K key : descriptor.getOptionalProviders()) {
+			for (M target : Iterables.concat(consumers.get(key), consumersOpt.get(key))) {
+				if (!target.equals(module)) { //avoid self dependencies
+					addEdge(module, target);
+				}
+			}
+		}
+	}
+
+	private void addEdge(M source, M target) throws CyclicGraphException {
+		if (!successors.get(source).add(target)) {
+			return;
+		}
+		predecessors.get(target).add(source);
+		touched.add(target);
+
+		int lowerBound = ord.get(target);
+		int upperBound = ord.get(source);
+		if (lowerBound < upperBound && !reorder(source, target, lowerBound, upperBound)) {
+			CyclicGraphException e = new CyclicGraphException(currentGraph(),
+					String.format("%s -> %s closes a cycle", source, target));
+			successors.get(source).remove(target);
+			predecessors.get(target).remove(source);
+			throw e;
+		}
+	}
+
+	/**
+	 * Pearce-Kelly reordering after a new edge x -&gt; y with ord(y) &lt; ord(x).
+	 * The vertices reachable from y (ord &lt; ord(x)) are moved behind
+	 * the vertices reaching x (ord &gt; ord(y)), reusing their positions.
+	 * @return false when x is reachable from y, the edge closes a cycle
+	 */
+	private boolean reorder(M x, M y, int lowerBound, int upperBound) {
+		List<M> forward = Lists.newArrayList();
+		Set<M> visited = Sets.newHashSet();
+		Deque<M> stack = new ArrayDeque<>();
+
+		stack.push(y);
+		visited.add(y);
+		while (!stack.isEmpty()) {
+			M v = stack.pop();
+			forward.add(v);
+			for (M w : successors.get(v)) {
+				int o = ord.get(w);
+				if (o == upperBound) {
+					return false;
+				}
+				if (o < upperBound && visited.add(w)) {
+					stack.push(w);
+				}
+			}
+		}
+
+		List<M> backward = Lists.newArrayList();
+		stack.push(x);
+		visited.add(x);
+		while (!stack.isEmpty()) {
+			M v = stack.pop();
+			backward.add(v);
+			for (M w : predecessors.get(v)) {
+				if (ord.get(w) > lowerBound && visited.add(w)) {
+					stack.push(w);
+				}
+			}
+		}
+
+		Collections.sort(forward, byOrd);
+		Collections.sort(backward, byOrd);
+		List<M> affected = Lists.newArrayList(Iterables.concat(backward, forward));
+		int[] positions = new int[affected.size()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = ord.get(affected.get(i));
+		}
+		Arrays.sort(positions);
+
+		for (int i = 0; i < positions.length; i++) {
+			M module = affected.get(i);
+			order.set(positions[i], module);
+			ord.put(module, positions[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the modules without any validation.
+	 * @return the remaining modules whose successors have changed
+	 */
+	private Set<M> detach(Collection<M> modules) {
+		Set<M> changed = Sets.newHashSet();
+		for (M module : modules) {
+			for (M successor : successors.remove(module)) {
+				Set<M> set = predecessors.get(successor);
+				if (set != null) {
+					set.remove(module);
+					touched.add(successor);
+				}
+			}
+			for (M predecessor : predecessors.remove(module)) {
+				Set<M> set = successors.get(predecessor);
+				if (set != null) {
+					set.remove(module);
+					changed.add(predecessor);
+				}
+			}
+
+			IDependencyDescriptor<K> descriptor = descriptors.remove(module);
+			for (K key : descriptor.getRequiredDependencies()) {
+				consumers.remove(key, module);
+			}
+			for (K key : descriptor.getOptionalDependencies()) {
+				consumersOpt.remove(key, module);
+			}
+			for (K key : descriptor.getOptionalProviders()) {
+				producers.remove(key, module);
+			}
+
+			order.set(ord.remove(module), null);
+			holes++;
+			rankings.remove(module);
+			touched.remove(module);
+		}
+		changed.removeAll(modules);
+
+		if (holes > order.size() / 2) {
+			compact();
+		}
+		return changed;
+	}
+
+	private void compact() {
+		List<M> modules = Lists.newArrayListWithCapacity(order.size() - holes);
+		for (M module : order) {
+			if (module != null) {
+				ord.put(module, modules.size());
+				modules.add(module);
+			}
+		}
+		order.clear();
+		order.addAll(modules);
+		holes = 0;
+	}
+
+	/**
+	 * Recalculates the rankings in reverse topological order,
+	 * a predecessor is queued only when the ranking of its successor has changed.
+	 */
+	private void updateRankings(Collection<M> changed) {
+		PriorityQueue<M> queue = new PriorityQueue<>(Math.max(1, changed.size()), byOrdDescending);
+		Set<M> queued = Sets.newHashSet(changed);
+		queue.addAll(queued);
+
+		while (!queue.isEmpty()) {
+			M module = queue.poll();
+			queued.remove(module);
+
+			int max = 0;
+			for (M successor : successors.get(module)) {
+				max = Math.max(max, 1 + rankings.get(successor));
+			}
+			int ranking = max + evalPriority(module);
+
+			Integer previous = rankings.put(module, ranking);
+			if (previous == null || previous != ranking) {
+				for (M predecessor : predecessors.get(module)) {
+					if (queued.add(predecessor)) {
+						queue.add(predecessor);
+					}
+				}
+			}
+		}
+	}
+
+	private int evalPriority(M module) {
+		int val = descriptors.get(module).getExecutionPriority();
+		if (val < 0 || val > 100000) {
+			throw new IllegalArgumentException(String.format("Node %s priority must be in range 0..100000: %s", module, val));
+		}
+		return val;
+	}
+
+	private Set<M> downstream(Set<M> modules) {
+		Set<M> result = Sets.newHashSet(modules);
+		Deque<M> stack = new ArrayDeque<>(result);
+		while (!stack.isEmpty()) {
+			for (M successor : successors.get(stack.pop())) {
+				if (result.add(successor)) {
+					stack.push(successor);
+				}
+			}
+		}
+		return result;
+	}
+
+	private DirectedGraph<M, GraphEdge<M>> currentGraph() {
+		ImmutableSet.Builder<GraphEdge<M>> edges = ImmutableSet.builder();
+		for (Map.Entry<M, Set<M>> entry : successors.entrySet()) {
+			for (M successor : entry.getValue()) {
+				edges.add(EvaluatedGraphEdge.edge(entry.getKey(), successor));
+			}
+		}
+		return CompactDirectedGraph.<M, GraphEdge<M>>builder()
+				.nodes(ImmutableSet.copyOf(descriptors.keySet()))
+				.edges(edges.build())
+				.build();
+	}
+
+}
@@ -0,0 +1,355 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IResourceDescriptor;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Builds the graph of {@link DependencyGraphFactory#newGraph(Set, Function)} concurrently in a fork/join pool.
+ * <p>
+ * The modules are split into chunks. The chunk tasks apply the adapter function, keep the execution priority
+ * and the resources of the descriptor and scatter the (key, module id) pairs into partitions by the key hash.
+ * Hence the adapter function is called just once per module, all of them in parallel. Then the partition tasks join the producers
+ * and consumers of their keys and emit the edges as pairs of module ids into an int buffer per partition.
+ * The buffers are concatenated and the graph is built by
+ * {@link CompactDirectedGraph#fromEdges(Collection, int[], int[], int)}, no intermediate edge objects are created.
+ * <p>
+ * The adapter function is called concurrently and therefore must be thread-safe.
+ *
+ * @param <K> The keys used to establish connection between modules.
+ * @param <M> The modules
+ */
+final class ParallelGraphBuilder<K, M> {
+
+	private static final Logger log = LoggerFactory.getLogger(ParallelGraphBuilder.class);
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private static final int REQUIRED = 0;
+	private static final int OPTIONAL = 1;
+	private static final int PROVIDED = 2;
+
+	private final Object[] vertices;
+	private final Function<M, ? extends IDependencyDescriptor<K>> adapterFunction;
+	private final int chunkCount;
+	private final int partitionCount;
+
+	/**
+	 * chunk -&gt; partition -&gt; (key, module id) pairs, the partition buffers are created on demand
+	 */
+	private final KeyBuffer[][] scattered;
+	private final EdgeBuffer[] edges;
+	private final int[] failedModules;
+	private final Object[] failedKeys;
+
+	/**
+	 * module id -&gt; execution priority and the resource tags or null, kept by the scatter phase
+	 */
+	private final int[] priorities;
+	private final Object[] resources;
+	private GraphIndex<M> index;
+
+	/**
+	 * @param modules The dependency units
+	 * @param adapterFunction The thread-safe function module -&gt; {@link IDependencyDescriptor}
+	 * @param parallelism The expected amount of concurrently executed tasks
+	 */
+	public ParallelGraphBuilder(Set<M> modules, Function<M, ? extends IDependencyDescriptor<K>> adapterFunction,
+			int parallelism) {
+		this.vertices = modules.toArray();
+		this.adapterFunction = adapterFunction;
+		this.chunkCount = Math.max(1, (vertices.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		this.partitionCount = Math.max(1, parallelism * 4);
+		this.scattered = new KeyBuffer[chunkCount][];
+		this.edges = new EdgeBuffer[partitionCount];
+		this.failedModules = new int[partitionCount];
+		this.failedKeys = new Object[partitionCount];
+		this.priorities = new int[vertices.length];
+		this.resources = new Object[vertices.length];
+		Arrays.fill(failedModules, -1);
+	}
+
+	/**
+	 * The partitions are processed independently, hence it is not determined which missing dependency is reported
+	 * when there are more of them, the one of the first module (in the iteration order) is reported.
+	 *
+	 * @param pool The pool executing the construction tasks
+	 * @return A new graph
+	 * @throws UnsatisfiedDependencyException when a mandatory dependency is missing
+	 */
+	public DirectedGraph<M, GraphEdge<M>> build(ForkJoinPool pool) throws UnsatisfiedDependencyException {
+		pool.invoke(new PhaseTask(true, 0, chunkCount));
+		pool.invoke(new PhaseTask(false, 0, partitionCount));
+
+		int failed = -1;
+		for (int partition = 0; partition < partitionCount; partition++) {
+			if (failedModules[partition] >= 0 && (failed < 0 || failedModules[partition] < failedModules[failed])) {
+				failed = partition;
+			}
+		}
+		if (failed >= 0) {
+			throw new UnsatisfiedDependencyException(vertices[failedModules[failed]], failedKeys[failed]);
+		}
+
+		int edgeCount = 0;
+		for (EdgeBuffer buffer : edges) {
+			edgeCount += buffer.size;
+		}
+		int[] sources = new int[edgeCount];
+		int[] targets = new int[edgeCount];
+		int pos = 0;
+		for (EdgeBuffer buffer : edges) {
+			System.arraycopy(buffer.sources, 0, sources, pos, buffer.size);
+			System.arraycopy(buffer.targets, 0, targets, pos, buffer.size);
+			pos += buffer.size;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<M> modules = (List<M>) Arrays.asList(vertices);
+		CompactDirectedGraph<M, GraphEdge<M>> graph = CompactDirectedGraph.fromEdges(modules, sources, targets, edgeCount);
+		index = graph.getIndex();
+		return graph;
+	}
+
+	/**
+	 * Available after {@link #build(ForkJoinPool)}, the modules are looked up by the index of the graph.
+	 * @return the execution priorities of the descriptors, 0 for unknown modules
+	 */
+	public Function<M, Integer> getPriorityFunction() {
+		return new Function<M, Integer>() {
+			@Override
+			public Integer apply(M module) {
+				int id = index.indexOf(module);
+				return id >= 0 ? priorities[id] : 0;
+			}
+		};
+	}
+
+	/**
+	 * Available after {@link #build(ForkJoinPool)}
+	 * @return the resource tags of the modules, see {@link IResourceDescriptor#getResources()}
+	 */
+	public SetMultimap<M, String> getModuleResources() {
+		ImmutableSetMultimap.Builder<M, String> builder = ImmutableSetMultimap.builder();
+		for (int id = 0; id < vertices.length; id++) {
+			if (resources[id] != null) {
+				@SuppressWarnings("unchecked")
+				Set<String> tags = (Set<String>) resources[id];
+				builder.putAll(index.vertex(id), tags);
+			}
+		}
+		return builder.build();
+	}
+
+	private int partition(Object key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return (hash & Integer.MAX_VALUE) % partitionCount;
+	}
+
+	/**
+	 * Applies the adapter function to the modules of the chunk, keeps the priorities and resources
+	 * and scatters the keys
+	 */
+	private void scatter(int chunk) {
+		KeyBuffer[] buffers = new KeyBuffer[partitionCount];
+		int to = Math.min(vertices.length, (chunk + 1) * CHUNK_SIZE);
+		for (int id = chunk * CHUNK_SIZE; id < to; id++) {
+			@SuppressWarnings("unchecked")
+			M module = (M) vertices[id];
+			IDependencyDescriptor<K> node = adapterFunction.apply(module);
+			priorities[id] = node.getExecutionPriority();
+			if (node instanceof IResourceDescriptor) {
+				Set<String> tags = ((IResourceDescriptor) node).getResources();
+				resources[id] = tags.isEmpty() ? null : tags;
+			}
+			for (K key : node.getRequiredDependencies()) {
+				add(buffers, key, id, REQUIRED);
+			}
+			for (K key : node.getOptionalDependencies()) {
+				add(buffers, key, id, OPTIONAL);
+			}
+			for (K key : node.getOptionalProviders()) {
+				add(buffers, key, id, PROVIDED);
+			}
+		}
+		scattered[chunk] = buffers;
+	}
+
+	private void add(KeyBuffer[] buffers, Object key, int id, int kind) {
+		int partition = partition(key);
+		KeyBuffer buffer = buffers[partition];
+		if (buffer == null) {
+			buffer = buffers[partition] = new KeyBuffer();
+		}
+		buffer.add(key, id << 2 | kind);
+	}
+
+	/**
+	 * Joins the producers and consumers of the keys of the partition.
+	 * The chunks are visited in order, hence the module ids of each key are ascending.
+	 */
+	private void gather(int partition) {
+		Map<Object, KeyEntry> entries = Maps.newLinkedHashMap();
+		for (KeyBuffer[] buffers : scattered) {
+			KeyBuffer buffer = buffers[partition];
+			if (buffer == null) {
+				continue;
+			}
+			for (int i = 0; i < buffer.size; i++) {
+				KeyEntry entry = entries.get(buffer.keys[i]);
+				if (entry == null) {
+					entry = new KeyEntry();
+					entries.put(buffer.keys[i], entry);
+				}
+				int value = buffer.values[i];
+				entry.ids[value & 3].add(value >>> 2);
+			}
+		}
+
+		EdgeBuffer buffer = new EdgeBuffer();
+		boolean trace = log.isTraceEnabled();
+		for (Map.Entry<Object, KeyEntry> e : entries.entrySet()) {
+			IntList producers = e.getValue().ids[PROVIDED];
+			IntList consumers = e.getValue().ids[REQUIRED];
+			if (producers.size == 0) {
+				if (consumers.size > 0 && (failedModules[partition] < 0 || consumers.values[0] < failedModules[partition])) {
+					failedModules[partition] = consumers.values[0];
+					failedKeys[partition] = e.getKey();
+				}
+				continue;
+			}
+			emit(buffer, producers, consumers);
+			emit(buffer, producers, e.getValue().ids[OPTIONAL]);
+
+			if (trace) {
+				trace(e.getKey(), producers, consumers, "({}) {} -> {}");
+				trace(e.getKey(), producers, e.getValue().ids[OPTIONAL], "({} opt) {} -> {}");
+			}
+		}
+		edges[partition] = buffer;
+	}
+
+	private static void emit(EdgeBuffer buffer, IntList producers, IntList consumers) {
+		for (int i = 0; i < consumers.size; i++) {
+			int target = consumers.values[i];
+			for (int j = 0; j < producers.size; j++) {
+				int source = producers.values[j];
+				if (source != target) { //avoid self dependencies
+					buffer.add(source, target);
+				}
+			}
+		}
+	}
+
+	private void trace(Object key, IntList producers, IntList consumers, String format) {
+		for (int i = 0; i < consumers.size; i++) {
+			for (int j = 0; j < producers.size; j++) {
+				if (producers.values[j] != consumers.values[i]) {
+					log.trace(format, key, vertices[producers.values[j]], vertices[consumers.values[i]]);
+				}
+			}
+		}
+	}
+
+	private final class PhaseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final boolean scatter;
+		private final int from;
+		private final int to;
+
+		/**
+		 * @param scatter whether the chunks are scattered or the partitions joined
+		 * @param from the first chunk or partition
+		 * @param to the last chunk or partition, exclusive
+		 */
+		public PhaseTask(boolean scatter, int from, int to) {
+			this.scatter = scatter;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new PhaseTask(scatter, from, middle), new PhaseTask(scatter, middle, to));
+			} else if (scatter) {
+				scatter(from);
+			} else {
+				gather(from);
+			}
+		}
+	}
+
+	private static final class KeyBuffer {
+		private Object[] keys = new Object[16];
+		private int[] values = new int[16];
+		private int size;
+
+		public void add(Object key, int value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			keys[size] = key;
+			values[size++] = value;
+		}
+	}
+
+	private static final class EdgeBuffer {
+		private int[] sources = new int[64];
+		private int[] targets = new int[64];
+		private int size;
+
+		public void add(int source, int target) {
+			if (size == sources.length) {
+				sources = Arrays.copyOf(sources, size * 2);
+				targets = Arrays.copyOf(targets, size * 2);
+			}
+			sources[size] = source;
+			targets[size++] = target;
+		}
+	}
+
+	/**
+	 * The module ids per kind (required, optional, provided) of a single key
+	 */
+	private static final class KeyEntry {
+		private final IntList[] ids = { new IntList(), new IntList(), new IntList() };
+	}
+
+	private static final class IntList {
+		private int[] values = new int[2];
+		private int size;
+
+		public void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+}
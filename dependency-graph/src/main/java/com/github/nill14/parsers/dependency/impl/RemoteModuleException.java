@@ -0,0 +1,25 @@
+package com.github.nill14.parsers.dependency.impl;
+
+/**
+ * A module failed on a remote worker, see {@link WalkCoordinator}.
+ * The original exception stays in the worker process, only its stack trace is transferred.
+ */
+public class RemoteModuleException extends Exception {
+
+	private static final long serialVersionUID = 4075361519932235014L;
+
+	private final String moduleKey;
+
+	public RemoteModuleException(String moduleKey, String remoteStackTrace) {
+		super(String.format("%s failed on a worker: %s", moduleKey, remoteStackTrace));
+		this.moduleKey = moduleKey;
+	}
+
+	/**
+	 * @return the key of the failed module
+	 */
+	public String getModuleKey() {
+		return moduleKey;
+	}
+
+}
@@ -1,11 +1,12 @@
 package com.github.nill14.parsers.dependency.impl;
 
+import java.io.IOException;
 import java.io.PrintStream;
 
 import org.slf4j.Logger;
 
 interface StringConsumer {
-	void process(String arg);
+	void process(CharSequence arg);
 }
 
 class InfoLogConsumer implements StringConsumer {
@@ -17,8 +18,8 @@ class InfoLogConsumer implements StringConsumer {
 	}
 	
 	@Override
-	public void process(String arg) {
-		log.info(arg);
+	public void process(CharSequence arg) {
+		log.info(arg.toString());
 	}
 }
 
@@ -31,8 +32,8 @@ class DebugLogConsumer implements StringConsumer {
 	}
 	
 	@Override
-	public void process(String arg) {
-		log.debug(arg);
+	public void process(CharSequence arg) {
+		log.debug(arg.toString());
 	}
 }
 
@@ -45,7 +46,43 @@ class PrintStreamConsumer implements StringConsumer {
 	}
 	
 	@Override
-	public void process(String arg) {
-		stream.println(arg);
+	public void process(CharSequence arg) {
+		stream.append(arg).println();
 	}
-}
\ No newline at end of file
+}
+
+class AppendableConsumer implements StringConsumer {
+
+	private final Appendable out;
+	private final String lineSeparator = System.lineSeparator();
+	
+	public AppendableConsumer(Appendable out) {
+		this.out = out;
+	}
+	
+	@Override
+	public void process(CharSequence arg) {
+		try {
+			out.append(arg).append(lineSeparator);
+		} catch (IOException e) {
+			throw new AppendException(e);
+		}
+	}
+	
+	/**
+	 * Carries the IOException through the printing code
+	 */
+	static final class AppendException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+
+		public AppendException(IOException cause) {
+			super(cause);
+		}
+		
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
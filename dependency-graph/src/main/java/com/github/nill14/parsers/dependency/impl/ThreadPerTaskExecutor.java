@@ -0,0 +1,79 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An executor starting a new thread for each task.
+ * <p>
+ * On Java 21+ the threads are virtual threads, which makes the executor suitable
+ * for modules blocked on I/O (JDBC, HTTP). On older runtimes daemon platform threads are used instead.
+ */
+public final class ThreadPerTaskExecutor implements Executor {
+
+	private static final Logger log = LoggerFactory.getLogger(ThreadPerTaskExecutor.class);
+
+	private static final String THREAD_PREFIX = "dependency-graph-";
+	private static final ThreadFactory virtualThreadFactory = newVirtualThreadFactory();
+
+	private final ThreadFactory threadFactory;
+
+	public ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * @return an executor backed by virtual threads or platform threads when not supported.
+	 */
+	public static ThreadPerTaskExecutor newVirtualThreadExecutor() {
+		if (virtualThreadFactory != null) {
+			return new ThreadPerTaskExecutor(virtualThreadFactory);
+		} else {
+			return new ThreadPerTaskExecutor(new DaemonThreadFactory());
+		}
+	}
+
+	/**
+	 * @return whether the runtime supports virtual threads (Java 21+)
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return virtualThreadFactory != null;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		threadFactory.newThread(command).start();
+	}
+
+	private static ThreadFactory newVirtualThreadFactory() {
+		try {
+			// Thread.ofVirtual().name(prefix, 0).factory() without compile time dependency on Java 21
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_PREFIX, 0L);
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.debug("Virtual threads are not supported, falling back to platform threads");
+			return null;
+		}
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, THREAD_PREFIX + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
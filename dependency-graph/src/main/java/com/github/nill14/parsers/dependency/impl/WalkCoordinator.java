@@ -0,0 +1,371 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.base.Function;
+import com.google.common.collect.Sets;
+
+/**
+ * The coordinator of a walk distributed over several worker processes, see {@link WalkWorker}.
+ * <p>
+ * The coordinator tracks the readiness of the modules and leases the ready ones to the connected workers
+ * in the ranking order, each worker gets at most its capacity of modules at once.
+ * The modules are identified by a key, the workers resolve the key to their own instance of the module.
+ * <p>
+ * A lease is returned to the ready modules when the module fails or when the worker disconnects
+ * or stops sending heartbeats, hence it is reassigned to any connected worker.
+ * A module is attempted at most {@link #setMaxAttempts(int)} times, then the walk fails.
+ * The walk waits for workers, it does not run any module itself.
+ *
+ * @param <M> The modules
+ */
+public final class WalkCoordinator<M> implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(WalkCoordinator.class);
+
+	private final GraphIndex<M> index;
+	private final String[] keys;
+	private final ServerSocket serverSocket;
+	private int maxAttempts = 3;
+
+	private final Lock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	private final int[] blockers;
+	private final int[] attempts;
+	private final TreeSet<Integer> ready = new TreeSet<>();
+	private int completed = 0;
+	private ExecutionException exception;
+	private boolean closed = false;
+
+	/**
+	 * Listens on the loopback interface.
+	 * @param dependencyGraph The graph to be walked
+	 * @param keyFunction The function module -&gt; key known by the workers
+	 * @param port The port or 0 for any free port
+	 * @throws IOException when the port cannot be bound
+	 */
+	public WalkCoordinator(IDependencyGraph<M> dependencyGraph, Function<? super M, String> keyFunction, int port) throws IOException {
+		this(dependencyGraph, keyFunction, new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+	}
+
+	/**
+	 * @param dependencyGraph The graph to be walked
+	 * @param keyFunction The function module -&gt; key known by the workers
+	 * @param serverSocket The bound socket accepting the workers, closed with the coordinator
+	 */
+	public WalkCoordinator(IDependencyGraph<M> dependencyGraph, Function<? super M, String> keyFunction, ServerSocket serverSocket) {
+		this.index = GraphIndex.of(dependencyGraph.getGraph(), dependencyGraph.getTopologicalOrder());
+		this.serverSocket = serverSocket;
+
+		int size = index.size();
+		keys = new String[size];
+		blockers = new int[size];
+		attempts = new int[size];
+		for (int id = 0; id < size; id++) {
+			keys[id] = keyFunction.apply(index.vertex(id));
+			blockers[id] = index.inDegree(id);
+			if (blockers[id] == 0) {
+				ready.add(id);
+			}
+		}
+	}
+
+	/**
+	 * @param maxAttempts how many times a module is leased before the walk fails, 3 by default
+	 * @return self
+	 */
+	public WalkCoordinator<M> setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("At least one attempt is required: " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+
+	/**
+	 * @return the port the workers connect to
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts the workers and blocks until all the modules are completed.
+	 * The coordinator is closed afterwards.
+	 * @throws ExecutionException when a module fails on all attempts or the coordinator is closed
+	 */
+	public void walk() throws ExecutionException {
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "walk-coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		lock.lock();
+		try {
+			while (!isFinished()) {
+				changed.await();
+			}
+			if (exception != null) {
+				throw exception;
+			}
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		} finally {
+			lock.unlock();
+			close();
+		}
+	}
+
+	/**
+	 * Stops accepting workers. A walk in progress fails, the workers are sent the end of the walk.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			if (!closed && completed < index.size() && exception == null) {
+				exception = new ExecutionException(new IOException("The coordinator has been closed"));
+			}
+			closed = true;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			log.debug("Cannot close the server socket", e);
+		}
+	}
+
+	private boolean isFinished() {
+		return completed == index.size() || exception != null || closed;
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setSoTimeout(WalkProtocol.HEARTBEAT_TIMEOUT_MILLIS);
+				socket.setTcpNoDelay(true);
+				new Connection(socket).start();
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					log.warn("Cannot accept a worker", e);
+				}
+			}
+		}
+	}
+
+	private void onDone(Connection connection, int id) {
+		lock.lock();
+		try {
+			if (!connection.leases.remove(id)) {
+				return;
+			}
+			completed++;
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				int successor = index.successor(id, i);
+				if (--blockers[successor] == 0) {
+					ready.add(successor);
+				}
+			}
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void onFailed(Connection connection, int id, String stackTrace) {
+		lock.lock();
+		try {
+			if (connection.leases.remove(id)) {
+				log.warn("{} failed on {}, attempt {} of {}", keys[id], connection, attempts[id], maxAttempts);
+				reassign(id, stackTrace);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void onDisconnect(Connection connection) {
+		lock.lock();
+		try {
+			connection.dead = true;
+			for (int id : connection.leases) {
+				log.warn("{} was lost with {}, attempt {} of {}", keys[id], connection, attempts[id], maxAttempts);
+				reassign(id, "The worker " + connection + " disconnected");
+			}
+			connection.leases.clear();
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void reassign(int id, String stackTrace) {
+		if (attempts[id] < maxAttempts) {
+			ready.add(id);
+		} else {
+			RemoteModuleException e = new RemoteModuleException(keys[id], stackTrace);
+			if (exception == null) {
+				exception = new ExecutionException(e);
+			} else {
+				exception.addSuppressed(e);
+			}
+		}
+		changed.signalAll();
+	}
+
+	/**
+	 * @return the next lease of the connection or -1 when the walk is over
+	 */
+	private int nextLease(Connection connection) throws InterruptedException {
+		lock.lock();
+		try {
+			while (!connection.dead && !isFinished() && (ready.isEmpty() || connection.leases.size() >= connection.capacity)) {
+				changed.await();
+			}
+			if (connection.dead || isFinished()) {
+				return -1;
+			}
+			int id = ready.pollFirst();
+			connection.leases.add(id);
+			attempts[id]++;
+			return id;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A reading thread processes the worker messages, a leasing thread sends the modules.
+	 */
+	private final class Connection {
+
+		private final Socket socket;
+		private final Set<Integer> leases = Sets.newHashSet();
+		private int capacity;
+		private boolean dead = false;
+
+		public Connection(Socket socket) {
+			this.socket = socket;
+		}
+
+		public void start() {
+			Thread reader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					read();
+				}
+			}, "walk-coordinator-" + this);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		private void read() {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				if (in.readInt() != WalkProtocol.MAGIC || in.readInt() != WalkProtocol.VERSION) {
+					throw new IOException("Not a compatible worker");
+				}
+				capacity = in.readInt();
+				if (capacity < 1) {
+					throw new IOException("Invalid capacity: " + capacity);
+				}
+				log.debug("{} connected with capacity {}", this, capacity);
+
+				Thread leaser = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						lease();
+					}
+				}, "walk-coordinator-lease-" + this);
+				leaser.setDaemon(true);
+				leaser.start();
+
+				while (true) {
+					byte type = in.readByte();
+					switch (type) {
+					case WalkProtocol.HEARTBEAT:
+						break;
+					case WalkProtocol.DONE:
+						onDone(this, in.readInt());
+						break;
+					case WalkProtocol.FAILED:
+						onFailed(this, in.readInt(), in.readUTF());
+						break;
+					default:
+						throw new IOException("Unexpected message: " + type);
+					}
+				}
+			} catch (EOFException e) {
+				log.debug("{} disconnected", this);
+			} catch (IOException e) {
+				log.debug("{} disconnected", this, e);
+			} finally {
+				onDisconnect(this);
+				closeSocket();
+			}
+		}
+
+		private void lease() {
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				int id;
+				while ((id = nextLease(this)) >= 0) {
+					out.writeByte(WalkProtocol.RUN);
+					out.writeInt(id);
+					out.writeUTF(keys[id]);
+					out.flush();
+				}
+				// the worker closes the connection, the reader gets the remaining messages
+				out.writeByte(WalkProtocol.END);
+				out.flush();
+				socket.shutdownOutput();
+			} catch (IOException | InterruptedException e) {
+				log.debug("Cannot lease to {}", this, e);
+				// the reader detects the closed socket and returns the leases
+				closeSocket();
+			}
+		}
+
+		private void closeSocket() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				log.debug("Cannot close {}", this, e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "worker " + socket.getRemoteSocketAddress();
+		}
+	}
+
+}
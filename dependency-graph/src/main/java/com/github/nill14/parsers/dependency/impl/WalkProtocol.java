@@ -0,0 +1,42 @@
+package com.github.nill14.parsers.dependency.impl;
+
+/**
+ * The socket protocol between {@link WalkCoordinator} and {@link WalkWorker}.
+ * <p>
+ * The worker opens the connection with the magic, the version and its capacity (ints).
+ * Then each message is a type byte followed by the payload:
+ * <ul>
+ * <li>RUN (coordinator): int lease, UTF module key</li>
+ * <li>DONE (worker): int lease</li>
+ * <li>FAILED (worker): int lease, UTF stack trace</li>
+ * <li>HEARTBEAT (worker): no payload</li>
+ * <li>END (coordinator): no payload, the walk is over</li>
+ * </ul>
+ */
+final class WalkProtocol {
+
+	static final int MAGIC = 0x44475721; // DGW!
+	static final int VERSION = 1;
+
+	static final byte RUN = 1;
+	static final byte DONE = 2;
+	static final byte FAILED = 3;
+	static final byte HEARTBEAT = 4;
+	static final byte END = 5;
+
+	static final int HEARTBEAT_MILLIS = 1000;
+
+	/**
+	 * A worker silent for longer is considered dead.
+	 */
+	static final int HEARTBEAT_TIMEOUT_MILLIS = 5 * HEARTBEAT_MILLIS;
+
+	/**
+	 * Keeps the UTF encoded stack trace below 64 kB.
+	 */
+	static final int MAX_STACK_TRACE_LENGTH = 16 * 1024;
+
+	private WalkProtocol() {
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkListener;
+
+/**
+ * Records {@link System#nanoTime()} stamps of a walk in atomic arrays indexed by the topological position.
+ * The stamps are relative to the walk start, -1 stands for a module which has not been run.
+ * <p>
+ * The stamps are written from the executor threads and the modules of a failed walk might still be running
+ * when the report is built, the atomic arrays publish the stamps safely. A module still running at that time
+ * has no finish stamp in the report.
+ * <p>
+ * A recorder can be reused, each walk starts a new recording.
+ *
+ * @param <M> The modules
+ */
+public final class WalkRecorder<M> implements IWalkListener<M> {
+
+	private IDependencyGraph<M> dependencyGraph;
+	private int parallelism;
+
+	private long walkStart;
+	private long walkEnd;
+	private AtomicLongArray released;
+	private AtomicLongArray started;
+	private AtomicLongArray finished;
+
+	@Override
+	public void walkStarted(IDependencyGraph<M> dependencyGraph, int parallelism) {
+		int size = dependencyGraph.getTopologicalOrder().size();
+		released = newStamps(size);
+		started = newStamps(size);
+		finished = newStamps(size);
+		this.dependencyGraph = dependencyGraph;
+		this.parallelism = parallelism;
+		walkEnd = -1;
+		walkStart = System.nanoTime();
+	}
+
+	private static AtomicLongArray newStamps(int size) {
+		AtomicLongArray stamps = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			stamps.set(i, -1);
+		}
+		return stamps;
+	}
+	
+	private static long[] toArray(AtomicLongArray stamps) {
+		long[] array = new long[stamps.length()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = stamps.get(i);
+		}
+		return array;
+	}
+
+	@Override
+	public void moduleReleased(int index, M module) {
+		released.set(index, System.nanoTime() - walkStart);
+	}
+
+	@Override
+	public void moduleStarted(int index, M module) {
+		started.set(index, System.nanoTime() - walkStart);
+	}
+
+	@Override
+	public void moduleFinished(int index, M module, Exception failure) {
+		finished.set(index, System.nanoTime() - walkStart);
+	}
+
+	@Override
+	public void walkFinished() {
+		walkEnd = System.nanoTime() - walkStart;
+	}
+
+	/**
+	 * @return the report of the last walk
+	 * @throws IllegalStateException when no walk is finished yet
+	 */
+	public WalkReport<M> getReport() {
+		if (dependencyGraph == null || walkEnd < 0) {
+			throw new IllegalStateException("No walk has been recorded");
+		}
+		return new WalkReport<>(dependencyGraph, parallelism, walkEnd, toArray(released), toArray(started), toArray(finished));
+	}
+
+}
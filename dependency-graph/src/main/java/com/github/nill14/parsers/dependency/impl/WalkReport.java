@@ -0,0 +1,283 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * The summary of a walk recorded by {@link WalkRecorder}. All times are in nanoseconds relative to the walk start.
+ * <p>
+ * A module is ready when its last dependency has finished. That dependency is the module gate.
+ * The actual critical path leads from the last finished module through the gates back to a module without dependencies.
+ * The blocking impact of a module is its run time multiplied by the count of modules
+ * transitively waiting for it as their gate.
+ *
+ * @param <M> The modules
+ */
+public final class WalkReport<M> {
+
+	private final GraphIndex<M> index;
+	private final int parallelism;
+	private final long makespan;
+	private final long[] ready;
+	private final long[] released;
+	private final long[] started;
+	private final long[] finished;
+	private final int[] gate;
+	private final long[] impact;
+	private long busy = 0;
+
+	WalkReport(IDependencyGraph<M> dependencyGraph, int parallelism, long makespan,
+			long[] released, long[] started, long[] finished) {
+		this.index = GraphIndex.of(dependencyGraph.getGraph(), dependencyGraph.getTopologicalOrder());
+		this.parallelism = parallelism;
+		this.makespan = makespan;
+		this.released = released;
+		this.started = started;
+		this.finished = finished;
+
+		int size = index.size();
+		ready = new long[size];
+		gate = new int[size];
+		for (int id = 0; id < size; id++) {
+			gate[id] = -1;
+			boolean complete = true;
+			for (int i = 0, count = index.inDegree(id); i < count; i++) {
+				int predecessor = index.predecessor(id, i);
+				complete &= finished[predecessor] >= 0;
+				if (gate[id] < 0 || finished[predecessor] > finished[gate[id]]) {
+					gate[id] = predecessor;
+				}
+			}
+			ready[id] = !complete ? -1 : gate[id] < 0 ? 0 : finished[gate[id]];
+			if (finished[id] >= 0 && started[id] >= 0) {
+				busy += finished[id] - started[id];
+			}
+		}
+
+		// gates have lower ids, hence the gated counts are complete when visited
+		long[] gated = new long[size];
+		impact = new long[size];
+		for (int id = size - 1; id >= 0; id--) {
+			impact[id] = runTime(id) * gated[id];
+			if (gate[id] >= 0) {
+				gated[gate[id]] += 1 + gated[id];
+			}
+		}
+	}
+
+	private long runTime(int id) {
+		return started[id] < 0 || finished[id] < 0 ? 0 : finished[id] - started[id];
+	}
+
+	private int id(M module) {
+		int id = index.indexOf(module);
+		if (id < 0) {
+			throw new IllegalArgumentException("Unknown module: " + module);
+		}
+		return id;
+	}
+
+	List<M> getModules() {
+		List<M> modules = Lists.newArrayListWithCapacity(index.size());
+		for (int id = 0; id < index.size(); id++) {
+			modules.add(index.vertex(id));
+		}
+		return modules;
+	}
+
+	/**
+	 * @return the time from the walk start to the walk end
+	 */
+	public long getMakespanNanos() {
+		return makespan;
+	}
+
+	/**
+	 * @return the sum of module run times
+	 */
+	public long getBusyNanos() {
+		return busy;
+	}
+
+	/**
+	 * @return the busy time divided by the makespan and the effective parallelism, in range 0..1
+	 */
+	public double getUtilisation() {
+		int threads = Math.max(1, Math.min(parallelism, index.size()));
+		return makespan == 0 ? 0 : (double) busy / makespan / threads;
+	}
+
+	/**
+	 * @param module The module
+	 * @return the time the last dependency finished or -1 when not all of them finished
+	 */
+	public long getReadyNanos(M module) {
+		return ready[id(module)];
+	}
+
+	/**
+	 * @param module The module
+	 * @return the time the module passed the parallelism limit or -1
+	 */
+	public long getReleaseNanos(M module) {
+		return released[id(module)];
+	}
+
+	/**
+	 * @param module The module
+	 * @return the time the module started to run or -1
+	 */
+	public long getStartNanos(M module) {
+		return started[id(module)];
+	}
+
+	/**
+	 * @param module The module
+	 * @return the time the module finished or -1
+	 */
+	public long getEndNanos(M module) {
+		return finished[id(module)];
+	}
+
+	/**
+	 * The queue wait consists of the wait for the parallelism limit and for an executor thread.
+	 * @param module The module
+	 * @return the time between the module was ready and started or -1 when not run
+	 */
+	public long getQueueWaitNanos(M module) {
+		int id = id(module);
+		return started[id] < 0 || ready[id] < 0 ? -1 : started[id] - ready[id];
+	}
+
+	/**
+	 * @param module The module
+	 * @return the run time of the module, 0 when not run
+	 */
+	public long getRunNanos(M module) {
+		return runTime(id(module));
+	}
+
+	/**
+	 * @param module The module
+	 * @return the run time multiplied by the count of modules transitively gated by the module
+	 */
+	public long getBlockingImpactNanos(M module) {
+		return impact[id(module)];
+	}
+
+	/**
+	 * @return the gate chain ending with the last finished module, starting with a module without dependencies
+	 */
+	public List<M> getCriticalPath() {
+		int last = -1;
+		for (int id = 0; id < finished.length; id++) {
+			if (finished[id] >= 0 && (last < 0 || finished[id] > finished[last])) {
+				last = id;
+			}
+		}
+
+		List<M> path = Lists.newArrayList();
+		for (int id = last; id >= 0; id = gate[id]) {
+			path.add(index.vertex(id));
+		}
+		return ImmutableList.copyOf(Lists.reverse(path));
+	}
+
+	/**
+	 * @param limit The maximum size of the result
+	 * @return the modules with a positive blocking impact, sorted by the impact descendingly
+	 */
+	public List<M> getTopBlockers(int limit) {
+		List<Integer> ids = Lists.newArrayList();
+		for (int id = 0; id < impact.length; id++) {
+			if (impact[id] > 0) {
+				ids.add(id);
+			}
+		}
+		Collections.sort(ids, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Long.compare(impact[o2], impact[o1]);
+			}
+		});
+
+		ImmutableList.Builder<M> builder = ImmutableList.builder();
+		for (int id : ids.subList(0, Math.min(limit, ids.size()))) {
+			builder.add(index.vertex(id));
+		}
+		return builder.build();
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f ms", nanos / 1e6);
+	}
+
+	private void processLines(StringConsumer lineConsumer) {
+		lineConsumer.process(String.format("Makespan %s, busy %s, utilisation %.0f %% of %d threads",
+				millis(makespan), millis(busy), 100 * getUtilisation(), Math.min(parallelism, index.size())));
+
+		lineConsumer.process("Critical path");
+		for (M module : getCriticalPath()) {
+			int id = id(module);
+			lineConsumer.process(String.format("  %s: wait %s, run %s",
+					module, millis(started[id] - ready[id]), millis(runTime(id))));
+		}
+
+		lineConsumer.process("Top blockers");
+		for (M module : getTopBlockers(10)) {
+			int id = id(module);
+			lineConsumer.process(String.format("  %s: impact %s, run %s", module, millis(impact[id]), millis(runTime(id))));
+		}
+	}
+
+	/**
+	 * Outputs the report to System.out
+	 */
+	public void toConsole() {
+		toPrintStream(System.out);
+	}
+
+	/**
+	 * Outputs the report to a PrintStream
+	 */
+	public void toPrintStream(PrintStream p) {
+		p.println("Walk Report");
+		processLines(new PrintStreamConsumer(p));
+	}
+
+	/**
+	 * Outputs the report to {@link Logger#info(String)}
+	 */
+	public void toInfoLog(Logger log) {
+		if (log.isInfoEnabled()) {
+			log.info("Walk Report");
+			processLines(new InfoLogConsumer(log));
+		}
+	}
+
+	/**
+	 * Outputs the report to {@link Logger#debug(String)}
+	 */
+	public void toDebugLog(Logger log) {
+		if (log.isDebugEnabled()) {
+			log.debug("Walk Report");
+			processLines(new DebugLogConsumer(log));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("WalkReport [makespan=%s, busy=%s, utilisation=%.2f]",
+				millis(makespan), millis(busy), getUtilisation());
+	}
+
+}
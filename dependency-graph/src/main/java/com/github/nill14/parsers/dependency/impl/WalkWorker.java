@@ -0,0 +1,148 @@
+package com.github.nill14.parsers.dependency.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+
+/**
+ * A worker process of a distributed walk, see {@link WalkCoordinator}.
+ * The worker runs the modules leased by the coordinator, at most capacity of them at once,
+ * and reports their completion or failure. The worker knows the same modules as the coordinator,
+ * the leased keys are resolved by the same key function.
+ *
+ * @param <M> The modules
+ */
+public final class WalkWorker<M> {
+
+	private static final Logger log = LoggerFactory.getLogger(WalkWorker.class);
+
+	private final Map<String, M> modules;
+	private final IConsumer<M> moduleConsumer;
+	private final int capacity;
+
+	/**
+	 * @param modules The modules known by the worker
+	 * @param keyFunction The function module -&gt; key, the same as the coordinator uses
+	 * @param moduleConsumer a processing closure
+	 * @param capacity the maximum amount of concurrently running modules
+	 */
+	public WalkWorker(Collection<M> modules, Function<? super M, String> keyFunction, IConsumer<M> moduleConsumer, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.modules = Maps.uniqueIndex(modules, keyFunction);
+		this.moduleConsumer = moduleConsumer;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Connects to the coordinator and runs the leased modules until the walk is over.
+	 * @param host The coordinator host
+	 * @param port The coordinator port
+	 * @throws IOException when the connection fails before the walk is over
+	 */
+	public void run(String host, int port) throws IOException {
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(WalkProtocol.MAGIC);
+			out.writeInt(WalkProtocol.VERSION);
+			out.writeInt(capacity);
+			out.flush();
+
+			ExecutorService executor = Executors.newFixedThreadPool(capacity);
+			ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+			try {
+				heartbeat.scheduleAtFixedRate(new Runnable() {
+					@Override
+					public void run() {
+						send(out, WalkProtocol.HEARTBEAT, -1, null);
+					}
+				}, WalkProtocol.HEARTBEAT_MILLIS, WalkProtocol.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+
+				while (true) {
+					byte type;
+					try {
+						type = in.readByte();
+					} catch (EOFException e) {
+						log.debug("The coordinator has closed the connection");
+						return;
+					}
+					if (type == WalkProtocol.END) {
+						return;
+					} else if (type != WalkProtocol.RUN) {
+						throw new IOException("Unexpected message: " + type);
+					}
+
+					final int lease = in.readInt();
+					final String key = in.readUTF();
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							process(out, lease, key);
+						}
+					});
+				}
+			} finally {
+				heartbeat.shutdownNow();
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private void process(DataOutputStream out, int lease, String key) {
+		try {
+			M module = modules.get(key);
+			if (module == null) {
+				throw new IllegalArgumentException("Unknown module: " + key);
+			}
+			moduleConsumer.process(module);
+		} catch (Exception e) {
+			String stackTrace = Throwables.getStackTraceAsString(e);
+			if (stackTrace.length() > WalkProtocol.MAX_STACK_TRACE_LENGTH) {
+				stackTrace = stackTrace.substring(0, WalkProtocol.MAX_STACK_TRACE_LENGTH);
+			}
+			send(out, WalkProtocol.FAILED, lease, stackTrace);
+			return;
+		}
+		send(out, WalkProtocol.DONE, lease, null);
+	}
+
+	private static void send(DataOutputStream out, byte type, int lease, String stackTrace) {
+		synchronized (out) {
+			try {
+				out.writeByte(type);
+				if (lease >= 0) {
+					out.writeInt(lease);
+				}
+				if (stackTrace != null) {
+					out.writeUTF(stackTrace);
+				}
+				out.flush();
+			} catch (IOException e) {
+				// the reading thread fails on the closed connection as well
+				log.debug("Cannot send a message to the coordinator", e);
+			}
+		}
+	}
+
+}
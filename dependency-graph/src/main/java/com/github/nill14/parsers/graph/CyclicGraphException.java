@@ -2,6 +2,7 @@ package com.github.nill14.parsers.graph;
 
 import java.util.Collection;
 import java.util.Deque;
+import java.util.List;
 
 import com.github.nill14.parsers.graph.utils.GraphCycleDetector;
 
@@ -34,4 +35,15 @@ public class CyclicGraphException extends Exception {
 		DirectedGraph<V, GraphEdge<V>> graph = getGraph();
 		return new GraphCycleDetector<>(graph).getNontrivialCycles();
 	}
+	
+	/**
+	 * Calculates a representative shortest cycle path for each non-trivial cycle in the graph.
+	 * @param <V> The vertices of the graph
+	 * @return the collection of cycle paths, the first vertex is repeated at the end
+	 * @see GraphCycleDetector#getShortestCycles()
+	 */
+	public <V> Collection<List<V>> getShortestGraphCycles() {
+		DirectedGraph<V, GraphEdge<V>> graph = getGraph();
+		return new GraphCycleDetector<>(graph).getShortestCycles();
+	}
 }
@@ -22,8 +22,8 @@ public interface DirectedGraph<V, E extends GraphEdge<V>> {
   <X> Set<X> predecessors(V vertex, Function<V, X> transform);
   
   /**
-   * @param excluded A (possibly mutable) set 
-   * @return a view of the graph
+   * @param excluded The vertices to be excluded, the set is copied
+   * @return a view of the graph, see {@link com.github.nill14.parsers.graph.impl.DirectedGraphView}
    */
   DirectedGraph<V, E> withoutExcluded(Set<V> excluded);
   
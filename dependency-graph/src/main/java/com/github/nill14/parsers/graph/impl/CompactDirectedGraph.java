@@ -0,0 +1,343 @@
+package com.github.nill14.parsers.graph.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.DirectedGraphBuilder;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.google.common.base.Function;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * A memory efficient alternative to {@link DefaultDirectedGraph} suitable for very large graphs.
+ * <p>
+ * Each vertex is assigned a dense int id (see {@link GraphIndex}) and the adjacency
+ * is kept in compressed sparse row int arrays. The edges are stored just once,
+ * ordered by their source. All the returned sets are lightweight views created on demand.
+ *
+ * @param <V> Vertex
+ * @param <E> Edge
+ */
+public class CompactDirectedGraph<V, E extends GraphEdge<V>> implements DirectedGraph<V, E> {
+
+	private final GraphIndex<V> index;
+
+	private final Object[] edges;
+	private final int[] edgeOffsets;
+	private final int[] inEdgeOffsets;
+	private final int[] inEdges;
+
+	public CompactDirectedGraph(Builder<V, E> builder) {
+		Object[] vertices = builder.nodes.toArray();
+		int[] slots = GraphIndex.newSlots(vertices);
+		int size = vertices.length;
+
+		Object[] unsorted = builder.edges.toArray();
+		int edgeCount = unsorted.length;
+		int[] sources = new int[edgeCount];
+		int[] targets = new int[edgeCount];
+		for (int i = 0; i < edgeCount; i++) {
+			@SuppressWarnings("unchecked")
+			E edge = (E) unsorted[i];
+			int source = GraphIndex.lookup(vertices, slots, edge.source());
+			if (source < 0) {
+				throw new IllegalStateException("Edge has invalid source: "+ edge.source());
+			}
+
+			int target = GraphIndex.lookup(vertices, slots, edge.target());
+			if (target < 0) {
+				throw new IllegalStateException("Edge has invalid target: "+ edge.target());
+			}
+			sources[i] = source;
+			targets[i] = target;
+		}
+
+		// stable counting sort of edges by source and by target
+		edgeOffsets = new int[size + 1];
+		inEdgeOffsets = new int[size + 1];
+		for (int i = 0; i < edgeCount; i++) {
+			edgeOffsets[sources[i] + 1]++;
+			inEdgeOffsets[targets[i] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			edgeOffsets[i + 1] += edgeOffsets[i];
+			inEdgeOffsets[i + 1] += inEdgeOffsets[i];
+		}
+
+		edges = new Object[edgeCount];
+		int[] sortedTargets = new int[edgeCount];
+		int[] fill = Arrays.copyOf(edgeOffsets, size);
+		for (int i = 0; i < edgeCount; i++) {
+			int pos = fill[sources[i]]++;
+			edges[pos] = unsorted[i];
+			sortedTargets[pos] = targets[i];
+		}
+
+		inEdges = new int[edgeCount];
+		fill = Arrays.copyOf(inEdgeOffsets, size);
+		for (int pos = 0; pos < edgeCount; pos++) {
+			inEdges[fill[sortedTargets[pos]]++] = pos;
+		}
+
+		index = GraphIndex.fromEdges(vertices, slots, sources, targets, edgeCount);
+	}
+
+	/**
+	 * The edges are created for the distinct (source, target) pairs of the index, ordered by source and target ids.
+	 */
+	private CompactDirectedGraph(GraphIndex<V> index) {
+		this.index = index;
+		int size = index.size();
+		int edgeCount = index.edgeCount();
+
+		edgeOffsets = new int[size + 1];
+		inEdgeOffsets = new int[size + 1];
+		for (int id = 0; id < size; id++) {
+			edgeOffsets[id + 1] = edgeOffsets[id] + index.outDegree(id);
+			inEdgeOffsets[id + 1] = inEdgeOffsets[id] + index.inDegree(id);
+		}
+
+		edges = new Object[edgeCount];
+		inEdges = new int[edgeCount];
+		int[] fill = Arrays.copyOf(inEdgeOffsets, size);
+		int pos = 0;
+		for (int source = 0; source < size; source++) {
+			for (int i = 0, count = index.outDegree(source); i < count; i++) {
+				int target = index.successor(source, i);
+				edges[pos] = EvaluatedGraphEdge.edge(index.vertex(source), index.vertex(target));
+				inEdges[fill[target]++] = pos;
+				pos++;
+			}
+		}
+	}
+
+	/**
+	 * @return the dense vertex ids and adjacency of this graph
+	 */
+	public GraphIndex<V> getIndex() {
+		return index;
+	}
+
+	@Override
+	public Set<V> nodes() {
+		return index.vertices();
+	}
+
+	@Override
+	public Set<V> successors(V vertex) {
+		int id = index.indexOf(vertex);
+		return id < 0 ? Collections.<V>emptySet() : index.successorSet(id);
+	}
+
+	@Override
+	public Set<V> predecessors(V vertex) {
+		int id = index.indexOf(vertex);
+		return id < 0 ? Collections.<V>emptySet() : index.predecessorSet(id);
+	}
+
+	@Override
+	public Set<E> predecessorEdges(V vertex) {
+		int id = index.indexOf(vertex);
+		return id < 0 ? Collections.<E>emptySet() : new EdgeSlice(inEdges, inEdgeOffsets[id], inEdgeOffsets[id + 1]);
+	}
+
+	@Override
+	public Set<E> successorEdges(V vertex) {
+		int id = index.indexOf(vertex);
+		return id < 0 ? Collections.<E>emptySet() : new EdgeSlice(null, edgeOffsets[id], edgeOffsets[id + 1]);
+	}
+
+	@Override
+	public Set<E> edges() {
+		return new EdgeSlice(null, 0, edges.length);
+	}
+
+	@Override
+	public boolean hasPredecessors(V vertex) {
+		int id = index.indexOf(vertex);
+		return id >= 0 && index.inDegree(id) > 0;
+	}
+
+	@Override
+	public boolean hasSucccessors(V vertex) {
+		int id = index.indexOf(vertex);
+		return id >= 0 && index.outDegree(id) > 0;
+	}
+
+	@Override
+	public <X> Set<X> predecessors(V vertex, Function<V, X> transform) {
+		return FluentIterable.from(predecessors(vertex)).transform(transform).toSet();
+	}
+
+	@Override
+	public <X> Set<X> successors(V vertex, Function<V, X> transform) {
+		return FluentIterable.from(successors(vertex)).transform(transform).toSet();
+	}
+
+	@Override
+	public DirectedGraph<V, E> withoutExcluded(Set<V> excluded) {
+		return new DirectedGraphView<V, E>(this, excluded);
+	}
+
+	/**
+	 * Creates a compact copy of an arbitrary graph
+	 * @param <V> Vertex
+	 * @param <E> Edge
+	 * @param graph The graph to be copied
+	 * @return a new graph
+	 */
+	public static <V, E extends GraphEdge<V>> CompactDirectedGraph<V, E> copyOf(DirectedGraph<V, E> graph) {
+		if (graph instanceof CompactDirectedGraph) {
+			return (CompactDirectedGraph<V, E>) graph;
+		}
+		Builder<V, E> builder = new Builder<>();
+		builder.nodes(graph.nodes()).edges(graph.edges());
+		return new CompactDirectedGraph<>(builder);
+	}
+
+	/**
+	 * Creates a graph from edges given by vertex ids, without any intermediate edge objects.
+	 * Parallel edges are merged, each distinct edge is represented by a single {@link EvaluatedGraphEdge}.
+	 * @param <V> Vertex
+	 * @param vertices all the vertices, the ids are assigned in the iteration order
+	 * @param sources edge sources (vertex ids)
+	 * @param targets edge targets (vertex ids)
+	 * @param edgeCount the count of edges, possibly containing duplicates
+	 * @return a new graph
+	 */
+	public static <V> CompactDirectedGraph<V, GraphEdge<V>> fromEdges(Collection<V> vertices,
+			int[] sources, int[] targets, int edgeCount) {
+		Object[] array = vertices.toArray();
+		for (int i = 0; i < edgeCount; i++) {
+			if (sources[i] < 0 || sources[i] >= array.length || targets[i] < 0 || targets[i] >= array.length) {
+				throw new IllegalArgumentException("Invalid edge: " + sources[i] + " -> " + targets[i]);
+			}
+		}
+		GraphIndex<V> index = GraphIndex.fromEdges(array, GraphIndex.newSlots(array), sources, targets, edgeCount);
+		return new CompactDirectedGraph<>(index);
+	}
+
+	/**
+	 * Creates a graph sharing the vertex ids and the adjacency with the index,
+	 * each edge is represented by a single {@link EvaluatedGraphEdge}.
+	 * @param <V> Vertex
+	 * @param index The index
+	 * @return a new graph
+	 */
+	public static <V> CompactDirectedGraph<V, GraphEdge<V>> fromIndex(GraphIndex<V> index) {
+		return new CompactDirectedGraph<>(index);
+	}
+
+	public static final <V, E extends GraphEdge<V>> DirectedGraphBuilder<V, E> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * A slice of the edges array, either direct (successor edges)
+	 * or indirect through edge positions (predecessor edges).
+	 */
+	private final class EdgeSlice extends AbstractSet<E> {
+
+		private final int[] positions;
+		private final int from;
+		private final int to;
+
+		public EdgeSlice(int[] positions, int from, int to) {
+			this.positions = positions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@SuppressWarnings("unchecked")
+		private E edge(int pos) {
+			return (E) edges[positions == null ? pos : positions[pos]];
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return new UnmodifiableIterator<E>() {
+				private int pos = from;
+
+				@Override
+				public boolean hasNext() {
+					return pos < to;
+				}
+
+				@Override
+				public E next() {
+					if (pos >= to) {
+						throw new NoSuchElementException();
+					}
+					return edge(pos++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return to == from;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof GraphEdge)) {
+				return false;
+			}
+			int source = index.indexOf(((GraphEdge<?>) o).source());
+			if (source < 0) {
+				return false;
+			}
+			for (int pos = edgeOffsets[source]; pos < edgeOffsets[source + 1]; pos++) {
+				if (edges[pos].equals(o)) {
+					return positions == null ? pos >= from && pos < to : containsPosition(pos);
+				}
+			}
+			return false;
+		}
+
+		private boolean containsPosition(int pos) {
+			for (int i = from; i < to; i++) {
+				if (positions[i] == pos) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public static class Builder<V, E extends GraphEdge<V>> implements DirectedGraphBuilder<V, E> {
+
+		private Set<V> nodes;
+		private Set<E> edges;
+
+		@Override
+		public DirectedGraphBuilder<V, E> nodes(Set<V> nodes) {
+			this.nodes = nodes;
+			return this;
+		}
+
+		@Override
+		public DirectedGraphBuilder<V, E> edges(Set<E> edges) {
+			this.edges = edges;
+			return this;
+		}
+
+		@Override
+		public DirectedGraph<V, E> build() {
+			return new CompactDirectedGraph<>(this);
+		}
+	}
+
+}
@@ -1,5 +1,9 @@
 package com.github.nill14.parsers.graph.impl;
 
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.github.nill14.parsers.graph.DirectedGraph;
@@ -8,87 +12,294 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Sets;
+import com.google.common.collect.UnmodifiableIterator;
 
+/**
+ * A view of the graph without the excluded vertices and their edges.
+ * <p>
+ * The excluded vertices are kept in a bitset over the vertex ids of {@link GraphIndex},
+ * along with the count of not excluded neighbours of each vertex.
+ * Hence {@link #hasPredecessors(Object)} and {@link #hasSucccessors(Object)} take constant time,
+ * the neighbour sets are views over the index filtered while iterated, nothing is copied.
+ * <p>
+ * The excluded set is copied when the view is created, further vertices are excluded (or included back)
+ * by {@link #exclude(Object)} and {@link #include(Object)} in O(degree).
+ * A nested view copies the bitset and the counts only.
+ * The view is not thread-safe while being modified.
+ *
+ * @param <V> Vertex
+ * @param <E> Edge
+ */
 public class DirectedGraphView<V, E extends GraphEdge<V>> implements DirectedGraph<V, E> {
 
-	
-	private final DefaultDirectedGraph<V, E> graph;
-	private final Set<V> excluded;
-	private final ExcludedPredicate<V, E> edgePredicate;
+	private final DirectedGraph<V, E> graph;
+	private final GraphIndex<V> index;
+	private final long[] excluded;
+	private final int[] inDegrees;
+	private final int[] outDegrees;
+	private int excludedCount = 0;
+	private final Predicate<E> edgePredicate = new Predicate<E>() {
+		@Override
+		public boolean apply(E e) {
+			return !isExcluded(e.source()) && !isExcluded(e.target());
+		}
+	};
+
+	public DirectedGraphView(DirectedGraph<V, E> graph, Set<V> excluded) {
+		this(graph, GraphIndex.of(graph));
+		for (V vertex : excluded) {
+			exclude(vertex);
+		}
+	}
 
-	public DirectedGraphView(DefaultDirectedGraph<V, E> graph, Set<V> excluded) {
+	private DirectedGraphView(DirectedGraph<V, E> graph, GraphIndex<V> index) {
 		this.graph = graph;
-		this.excluded = excluded;
-		this.edgePredicate = new ExcludedPredicate<>(excluded);
+		this.index = index;
+		int size = index.size();
+		excluded = new long[(size + 63) >>> 6];
+		inDegrees = new int[size];
+		outDegrees = new int[size];
+		for (int id = 0; id < size; id++) {
+			inDegrees[id] = index.inDegree(id);
+			outDegrees[id] = index.outDegree(id);
+		}
+	}
+
+	private DirectedGraphView(DirectedGraphView<V, E> view) {
+		this.graph = view.graph;
+		this.index = view.index;
+		this.excluded = view.excluded.clone();
+		this.inDegrees = view.inDegrees.clone();
+		this.outDegrees = view.outDegrees.clone();
+		this.excludedCount = view.excludedCount;
+	}
+
+	private boolean isExcludedId(int id) {
+		return (excluded[id >>> 6] & (1L << id)) != 0;
+	}
+
+	/**
+	 * @param vertex a vertex
+	 * @return whether the vertex is excluded, unknown vertices are not excluded
+	 */
+	public boolean isExcluded(V vertex) {
+		int id = index.indexOf(vertex);
+		return id >= 0 && isExcludedId(id);
+	}
+
+	/**
+	 * Removes the vertex and its edges from the view
+	 * @param vertex a vertex, unknown vertices are ignored
+	 * @return whether the view has changed
+	 */
+	public boolean exclude(V vertex) {
+		int id = index.indexOf(vertex);
+		if (id < 0 || isExcludedId(id)) {
+			return false;
+		}
+		excluded[id >>> 6] |= 1L << id;
+		excludedCount++;
+		for (int i = 0, count = index.outDegree(id); i < count; i++) {
+			inDegrees[index.successor(id, i)]--;
+		}
+		for (int i = 0, count = index.inDegree(id); i < count; i++) {
+			outDegrees[index.predecessor(id, i)]--;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the excluded vertex and its edges to the view
+	 * @param vertex a vertex, unknown vertices are ignored
+	 * @return whether the view has changed
+	 */
+	public boolean include(V vertex) {
+		int id = index.indexOf(vertex);
+		if (id < 0 || !isExcludedId(id)) {
+			return false;
+		}
+		excluded[id >>> 6] &= ~(1L << id);
+		excludedCount--;
+		for (int i = 0, count = index.outDegree(id); i < count; i++) {
+			inDegrees[index.successor(id, i)]++;
+		}
+		for (int i = 0, count = index.inDegree(id); i < count; i++) {
+			outDegrees[index.predecessor(id, i)]++;
+		}
+		return true;
 	}
 
 	@Override
 	public Set<V> nodes() {
-		return Sets.difference(graph.nodes(), excluded);
+		return new VertexSet();
 	}
 
 	@Override
 	public Set<E> edges() {
-		return FluentIterable.from(graph.edges()).filter(edgePredicate).toSet();
+		return Sets.filter(graph.edges(), edgePredicate);
 	}
 
 	@Override
 	public Set<E> successorEdges(V vertex) {
-		return FluentIterable.from(graph.successorEdges(vertex)).filter(edgePredicate).toSet();
+		return Sets.filter(graph.successorEdges(vertex), edgePredicate);
 	}
 
 	@Override
 	public Set<E> predecessorEdges(V vertex) {
-		return FluentIterable.from(graph.predecessorEdges(vertex)).filter(edgePredicate).toSet();
+		return Sets.filter(graph.predecessorEdges(vertex), edgePredicate);
 	}
 
 	@Override
 	public Set<V> successors(V vertex) {
-		return Sets.difference(graph.successors(vertex), excluded);
+		int id = index.indexOf(vertex);
+		return id < 0 ? Collections.<V>emptySet() : new NeighbourSet(id, true);
 	}
 
 	@Override
 	public Set<V> predecessors(V vertex) {
-		return Sets.difference(graph.predecessors(vertex), excluded);
+		int id = index.indexOf(vertex);
+		return id < 0 ? Collections.<V>emptySet() : new NeighbourSet(id, false);
 	}
 
 	@Override
 	public boolean hasPredecessors(V vertex) {
-		return !Sets.difference(graph.predecessors(vertex), excluded).isEmpty();
+		int id = index.indexOf(vertex);
+		return id >= 0 && inDegrees[id] > 0;
 	}
 
 	@Override
 	public boolean hasSucccessors(V vertex) {
-		return !Sets.difference(graph.successors(vertex), excluded).isEmpty();
+		int id = index.indexOf(vertex);
+		return id >= 0 && outDegrees[id] > 0;
 	}
-	
+
 	@Override
 	public <X> Set<X> predecessors(V vertex, Function<V, X> transform) {
 		return FluentIterable.from(predecessors(vertex)).transform(transform).toSet();
 	}
-	
+
 	@Override
 	public <X> Set<X> successors(V vertex, Function<V, X> transform) {
 		return FluentIterable.from(successors(vertex)).transform(transform).toSet();
 	}
 
+	/**
+	 * @return a new view excluding the vertices excluded by this view and the given ones
+	 */
 	@Override
-	public DirectedGraph<V, E> withoutExcluded(Set<V> excluded) {
-		throw new UnsupportedOperationException();
+	public DirectedGraphView<V, E> withoutExcluded(Set<V> excluded) {
+		DirectedGraphView<V, E> view = new DirectedGraphView<>(this);
+		for (V vertex : excluded) {
+			view.exclude(vertex);
+		}
+		return view;
 	}
-	
 
-	private static class ExcludedPredicate<V, E extends GraphEdge<V>> implements Predicate<E> {
-		
-		private final Set<V> excluded;
+	private final class VertexSet extends AbstractSet<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new IdIterator() {
+				@Override
+				protected int id(int pos) {
+					return pos;
+				}
+			}.init(0, index.size());
+		}
 
-		public ExcludedPredicate(Set<V> excluded) {
-			this.excluded = excluded;
+		@Override
+		public int size() {
+			return index.size() - excludedCount;
 		}
-		
+
 		@Override
-		public boolean apply(E e) {
-			return !excluded.contains(e.source()) && !excluded.contains(e.target());
+		public boolean contains(Object o) {
+			int id = index.indexOf(o);
+			return id >= 0 && !isExcludedId(id);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The successors or predecessors which are not excluded
+	 */
+	private final class NeighbourSet extends AbstractSet<V> {
+
+		private final int id;
+		private final boolean successors;
+
+		public NeighbourSet(int id, boolean successors) {
+			this.id = id;
+			this.successors = successors;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			int count = successors ? index.outDegree(id) : index.inDegree(id);
+			return new IdIterator() {
+				@Override
+				protected int id(int pos) {
+					return successors ? index.successor(id, pos) : index.predecessor(id, pos);
+				}
+			}.init(0, count);
+		}
+
+		@Override
+		public int size() {
+			return successors ? outDegrees[id] : inDegrees[id];
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			int other = index.indexOf(o);
+			if (other < 0 || isExcludedId(other)) {
+				return false;
+			}
+			return successors ? index.successorSet(id).contains(o) : index.predecessorSet(id).contains(o);
+		}
+	}
+
+	/**
+	 * Iterates positions from..to-1 mapped to vertex ids, skipping the excluded ids
+	 */
+	private abstract class IdIterator extends UnmodifiableIterator<V> {
+
+		private int pos;
+		private int to;
+
+		protected abstract int id(int pos);
+
+		IdIterator init(int from, int to) {
+			this.pos = from;
+			this.to = to;
+			skip();
+			return this;
+		}
+
+		private void skip() {
+			while (pos < to && isExcludedId(id(pos))) {
+				pos++;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pos < to;
+		}
+
+		@Override
+		public V next() {
+			if (pos >= to) {
+				throw new NoSuchElementException();
+			}
+			V vertex = index.vertex(id(pos++));
+			skip();
+			return vertex;
+		}
+	}
+
+}
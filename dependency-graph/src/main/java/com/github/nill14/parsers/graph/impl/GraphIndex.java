@@ -0,0 +1,405 @@
+package com.github.nill14.parsers.graph.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * Dense integer identifiers for graph vertices along with forward and reverse adjacency
+ * in compressed sparse row (CSR) form.
+ * <p>
+ * Vertex ids are assigned in range 0..size()-1. The neighbours of each vertex are stored
+ * sorted by id and without duplicates, i.e. with the same set semantics
+ * as {@link DirectedGraph#successors(Object)} and {@link DirectedGraph#predecessors(Object)}.
+ * The index is immutable and therefore thread-safe.
+ *
+ * @param <V> Vertex
+ */
+public final class GraphIndex<V> {
+
+	private final Object[] vertices;
+	private final int[] slots;
+
+	private final int[] successorOffsets;
+	private final int[] successors;
+	private final int[] predecessorOffsets;
+	private final int[] predecessors;
+
+	private GraphIndex(Object[] vertices, int[] slots, int[] successorOffsets, int[] successors) {
+		this.vertices = vertices;
+		this.slots = slots;
+		this.successorOffsets = successorOffsets;
+		this.successors = successors;
+
+		int size = vertices.length;
+		predecessorOffsets = new int[size + 1];
+		for (int i = 0; i < successorOffsets[size]; i++) {
+			predecessorOffsets[successors[i] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			predecessorOffsets[i + 1] += predecessorOffsets[i];
+		}
+
+		// sources are visited in ascending order, hence each slice ends up sorted
+		predecessors = new int[successorOffsets[size]];
+		int[] fill = Arrays.copyOf(predecessorOffsets, size);
+		for (int source = 0; source < size; source++) {
+			for (int i = successorOffsets[source]; i < successorOffsets[source + 1]; i++) {
+				predecessors[fill[successors[i]]++] = source;
+			}
+		}
+	}
+
+	/**
+	 * Creates an index with vertex ids assigned in the iteration order of {@link DirectedGraph#nodes()}
+	 * @param <V> Vertex
+	 * @param graph The graph
+	 * @return a new index
+	 */
+	public static <V> GraphIndex<V> of(DirectedGraph<V, ?> graph) {
+		if (graph instanceof CompactDirectedGraph) {
+			return ((CompactDirectedGraph<V, ?>) graph).getIndex();
+		}
+		return of(graph, graph.nodes());
+	}
+
+	/**
+	 * Creates an index with vertex ids assigned in the given order,
+	 * e.g. a topological order.
+	 * @param <V> Vertex
+	 * @param graph The graph
+	 * @param order all graph nodes, each exactly once
+	 * @return a new index
+	 */
+	public static <V> GraphIndex<V> of(DirectedGraph<V, ?> graph, Collection<V> order) {
+		Object[] vertices = order.toArray();
+		int[] slots = newSlots(vertices);
+
+		int[] offsets = new int[vertices.length + 1];
+		for (int i = 0; i < vertices.length; i++) {
+			@SuppressWarnings("unchecked")
+			V vertex = (V) vertices[i];
+			offsets[i + 1] = offsets[i] + graph.successors(vertex).size();
+		}
+
+		int[] targets = new int[offsets[vertices.length]];
+		for (int i = 0; i < vertices.length; i++) {
+			@SuppressWarnings("unchecked")
+			V vertex = (V) vertices[i];
+			int pos = offsets[i];
+			for (V successor : graph.successors(vertex)) {
+				int target = lookup(vertices, slots, successor);
+				if (target < 0) {
+					throw new IllegalArgumentException("Vertex is not ordered: " + successor);
+				}
+				targets[pos++] = target;
+			}
+			Arrays.sort(targets, offsets[i], pos);
+		}
+		return new GraphIndex<>(vertices, slots, offsets, targets);
+	}
+
+	/**
+	 * Creates an index from the adjacency in compressed sparse row form, e.g. a stored one.
+	 * @param <V> Vertex
+	 * @param vertices all the vertices, the ids are assigned in the iteration order
+	 * @param successorOffsets the successors of vertex i are at positions successorOffsets[i]..successorOffsets[i+1]-1
+	 * @param successors successor ids, each slice sorted ascendingly without duplicates
+	 * @return a new index
+	 * @throws IllegalArgumentException when the adjacency is malformed
+	 */
+	public static <V> GraphIndex<V> fromAdjacency(Collection<V> vertices, int[] successorOffsets, int[] successors) {
+		Object[] array = vertices.toArray();
+		int size = array.length;
+		if (successorOffsets.length != size + 1 || successorOffsets[0] != 0 || successorOffsets[size] != successors.length) {
+			throw new IllegalArgumentException("Invalid offsets");
+		}
+		for (int id = 0; id < size; id++) {
+			int from = successorOffsets[id];
+			int to = successorOffsets[id + 1];
+			if (from > to) {
+				throw new IllegalArgumentException("Invalid offsets of vertex " + id);
+			}
+			for (int i = from; i < to; i++) {
+				if (successors[i] < 0 || successors[i] >= size || (i > from && successors[i] <= successors[i - 1])) {
+					throw new IllegalArgumentException("Invalid successors of vertex " + id);
+				}
+			}
+		}
+		return new GraphIndex<>(array, newSlots(array), successorOffsets, successors);
+	}
+
+	/**
+	 * @param vertices all the vertices
+	 * @param slots the result of {@link #newSlots(Object[])}
+	 * @param sources edge sources (vertex ids)
+	 * @param targets edge targets (vertex ids)
+	 * @param edgeCount the count of edges, possibly containing duplicates
+	 * @return a new index
+	 */
+	static <V> GraphIndex<V> fromEdges(Object[] vertices, int[] slots, int[] sources, int[] targets, int edgeCount) {
+		int size = vertices.length;
+		int[] offsets = new int[size + 1];
+		for (int i = 0; i < edgeCount; i++) {
+			offsets[sources[i] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] sorted = new int[edgeCount];
+		int[] fill = Arrays.copyOf(offsets, size);
+		for (int i = 0; i < edgeCount; i++) {
+			sorted[fill[sources[i]]++] = targets[i];
+		}
+
+		// sort each slice and squeeze out parallel edges
+		int pos = 0;
+		int start = 0;
+		for (int i = 0; i < size; i++) {
+			int end = offsets[i + 1];
+			Arrays.sort(sorted, start, end);
+			offsets[i] = pos;
+			for (int j = start; j < end; j++) {
+				if (j == start || sorted[j] != sorted[j - 1]) {
+					sorted[pos++] = sorted[j];
+				}
+			}
+			start = end;
+		}
+		offsets[size] = pos;
+
+		int[] successors = pos == edgeCount ? sorted : Arrays.copyOf(sorted, pos);
+		return new GraphIndex<>(vertices, slots, offsets, successors);
+	}
+
+	/**
+	 * Creates an index over the same vertices (with the same ids) and different edges,
+	 * e.g. a subset of the edges of this index
+	 * @param sources edge sources (vertex ids)
+	 * @param targets edge targets (vertex ids)
+	 * @param edgeCount the count of edges, possibly containing duplicates
+	 * @return a new index
+	 */
+	public GraphIndex<V> withEdges(int[] sources, int[] targets, int edgeCount) {
+		for (int i = 0; i < edgeCount; i++) {
+			if (sources[i] < 0 || sources[i] >= vertices.length || targets[i] < 0 || targets[i] >= vertices.length) {
+				throw new IllegalArgumentException("Invalid edge: " + sources[i] + " -> " + targets[i]);
+			}
+		}
+		return fromEdges(vertices, slots, sources, targets, edgeCount);
+	}
+
+	/**
+	 * Builds an open addressing hash table of vertex ids
+	 * @param vertices all the vertices
+	 * @return the table, each slot contains either zero or vertex id + 1
+	 */
+	static int[] newSlots(Object[] vertices) {
+		int capacity = Integer.highestOneBit(Math.max(vertices.length, 1) * 2 - 1) << 1;
+		int[] slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int id = 0; id < vertices.length; id++) {
+			Object vertex = vertices[id];
+			int slot = smear(vertex.hashCode()) & mask;
+			while (slots[slot] != 0) {
+				if (vertices[slots[slot] - 1].equals(vertex)) {
+					throw new IllegalArgumentException("Duplicate vertex: " + vertex);
+				}
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = id + 1;
+		}
+		return slots;
+	}
+
+	static int lookup(Object[] vertices, int[] slots, Object vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+		int mask = slots.length - 1;
+		int slot = smear(vertex.hashCode()) & mask;
+		int id;
+		while ((id = slots[slot]) != 0) {
+			Object candidate = vertices[id - 1];
+			if (candidate == vertex || candidate.equals(vertex)) {
+				return id - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int smear(int hashCode) {
+		return 0x1b873593 * Integer.rotateLeft(hashCode * 0xcc9e2d51, 15);
+	}
+
+	/**
+	 * @return the count of vertices
+	 */
+	public int size() {
+		return vertices.length;
+	}
+
+	/**
+	 * @return the count of distinct (source, target) pairs
+	 */
+	public int edgeCount() {
+		return successors.length;
+	}
+
+	/**
+	 * @param vertex a vertex
+	 * @return the vertex id or -1 when the vertex is not indexed
+	 */
+	public int indexOf(Object vertex) {
+		return lookup(vertices, slots, vertex);
+	}
+
+	/**
+	 * @param id vertex id
+	 * @return the vertex
+	 */
+	@SuppressWarnings("unchecked")
+	public V vertex(int id) {
+		return (V) vertices[id];
+	}
+
+	public int outDegree(int id) {
+		return successorOffsets[id + 1] - successorOffsets[id];
+	}
+
+	/**
+	 * @param id vertex id
+	 * @param i position in range 0..outDegree(id)-1
+	 * @return the successor id
+	 */
+	public int successor(int id, int i) {
+		return successors[successorOffsets[id] + i];
+	}
+
+	public int inDegree(int id) {
+		return predecessorOffsets[id + 1] - predecessorOffsets[id];
+	}
+
+	/**
+	 * @param id vertex id
+	 * @param i position in range 0..inDegree(id)-1
+	 * @return the predecessor id
+	 */
+	public int predecessor(int id, int i) {
+		return predecessors[predecessorOffsets[id] + i];
+	}
+
+	/**
+	 * @return an unmodifiable view of all the vertices
+	 */
+	public Set<V> vertices() {
+		return new VertexSet();
+	}
+
+	/**
+	 * @param id vertex id
+	 * @return an unmodifiable view of successors
+	 */
+	public Set<V> successorSet(int id) {
+		return new IdSlice(successors, successorOffsets[id], successorOffsets[id + 1]);
+	}
+
+	/**
+	 * @param id vertex id
+	 * @return an unmodifiable view of predecessors
+	 */
+	public Set<V> predecessorSet(int id) {
+		return new IdSlice(predecessors, predecessorOffsets[id], predecessorOffsets[id + 1]);
+	}
+
+	private final class VertexSet extends AbstractSet<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new UnmodifiableIterator<V>() {
+				private int pos = 0;
+
+				@Override
+				public boolean hasNext() {
+					return pos < vertices.length;
+				}
+
+				@Override
+				public V next() {
+					if (pos >= vertices.length) {
+						throw new NoSuchElementException();
+					}
+					return vertex(pos++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return vertices.length;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
+
+	private final class IdSlice extends AbstractSet<V> {
+
+		private final int[] ids;
+		private final int from;
+		private final int to;
+
+		public IdSlice(int[] ids, int from, int to) {
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new UnmodifiableIterator<V>() {
+				private int pos = from;
+
+				@Override
+				public boolean hasNext() {
+					return pos < to;
+				}
+
+				@Override
+				public V next() {
+					if (pos >= to) {
+						throw new NoSuchElementException();
+					}
+					return vertex(ids[pos++]);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return to == from;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			int id = indexOf(o);
+			return id >= 0 && Arrays.binarySearch(ids, from, to, id) >= 0;
+		}
+	}
+
+}
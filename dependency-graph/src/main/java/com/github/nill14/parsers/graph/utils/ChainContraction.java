@@ -0,0 +1,126 @@
+package com.github.nill14.parsers.graph.utils;
+
+import java.util.List;
+
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.collect.Lists;
+
+/**
+ * Contracts the maximal linear chains of a directed acyclic graph into single vertices.
+ * A chain v1 -&gt; v2 -&gt; ... -&gt; vk continues as long as the last vertex has a single successor
+ * and the successor has a single predecessor. The chain members can never run concurrently,
+ * hence a walker schedules the whole chain as one task and saves the round-trip per member.
+ * <p>
+ * The contracted graph is represented by the chain heads, the in-edges of a chain lead to its head
+ * and the out-edges leave its tail. The chains are numbered in the topological order of their heads,
+ * which is a topological order of the contracted graph.
+ *
+ * @param <V> Vertex
+ */
+public final class ChainContraction<V> {
+
+	private final GraphIndex<V> index;
+	private final GraphIndex<V> contractedIndex;
+
+	/**
+	 * chain -&gt; slice of members, the ids of the original index
+	 */
+	private final int[] offsets;
+	private final int[] members;
+
+	private ChainContraction(GraphIndex<V> index, GraphIndex<V> contractedIndex, int[] offsets, int[] members) {
+		this.index = index;
+		this.contractedIndex = contractedIndex;
+		this.offsets = offsets;
+		this.members = members;
+	}
+
+	/**
+	 * @param <V> Vertex
+	 * @param topologicalIndex The graph index with vertex ids assigned in topological order
+	 * @return the chains of the graph
+	 */
+	public static <V> ChainContraction<V> of(GraphIndex<V> topologicalIndex) {
+		GraphIndex<V> index = topologicalIndex;
+		int size = index.size();
+
+		int[] chains = new int[size];
+		int[] offsets = new int[size + 1];
+		int[] members = new int[size];
+		List<V> heads = Lists.newArrayList();
+		int count = 0;
+		for (int id = 0, pos = 0; id < size; id++) {
+			if (index.inDegree(id) == 1 && index.outDegree(index.predecessor(id, 0)) == 1) {
+				continue; // a chain continuation, added along with the head
+			}
+			heads.add(index.vertex(id));
+			int member = id;
+			while (true) {
+				chains[member] = count;
+				members[pos++] = member;
+				if (index.outDegree(member) != 1 || index.inDegree(index.successor(member, 0)) != 1) {
+					break;
+				}
+				member = index.successor(member, 0);
+			}
+			offsets[++count] = pos;
+		}
+
+		// just the tails have successors outside of the chain, all of them are heads
+		int[] successorOffsets = new int[count + 1];
+		for (int chain = 0; chain < count; chain++) {
+			int tail = members[offsets[chain + 1] - 1];
+			successorOffsets[chain + 1] = successorOffsets[chain] + index.outDegree(tail);
+		}
+		int[] successors = new int[successorOffsets[count]];
+		for (int chain = 0, pos = 0; chain < count; chain++) {
+			int tail = members[offsets[chain + 1] - 1];
+			for (int i = 0, degree = index.outDegree(tail); i < degree; i++) {
+				// the heads are numbered in order, the successors stay sorted
+				successors[pos++] = chains[index.successor(tail, i)];
+			}
+		}
+
+		GraphIndex<V> contractedIndex = count == size ? index : GraphIndex.fromAdjacency(heads, successorOffsets, successors);
+		return new ChainContraction<>(index, contractedIndex, offsets, members);
+	}
+
+	/**
+	 * @return whether any chain has more members, i.e. the contraction is worthwhile
+	 */
+	public boolean isContracted() {
+		return contractedIndex.size() < index.size();
+	}
+
+	/**
+	 * @return the graph being contracted, the vertices are all the chain members
+	 */
+	public GraphIndex<V> getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the contracted graph, the vertices are the chain heads and the ids are the chain ids
+	 */
+	public GraphIndex<V> getContractedIndex() {
+		return contractedIndex;
+	}
+
+	/**
+	 * @param chain The chain id
+	 * @return the count of the chain members
+	 */
+	public int chainLength(int chain) {
+		return offsets[chain + 1] - offsets[chain];
+	}
+
+	/**
+	 * @param chain The chain id
+	 * @param i The position in the chain, the head is 0
+	 * @return the chain member
+	 */
+	public V chainMember(int chain, int i) {
+		return index.vertex(members[offsets[chain] + i]);
+	}
+
+}
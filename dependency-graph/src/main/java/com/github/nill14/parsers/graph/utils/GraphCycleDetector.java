@@ -1,128 +1,193 @@
 package com.github.nill14.parsers.graph.utils;
 
-import static java.lang.Math.*;
-
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
-import java.util.Set;
 
 import com.github.nill14.parsers.graph.DirectedGraph;
-import com.google.common.base.Function;
-import com.google.common.collect.ImmutableMap;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 /**
- * 
+ *
  * http://en.wikipedia.org/wiki/Tarjan's_strongly_connected_components_algorithm
+ * <p>
+ * The algorithm runs iteratively with an explicit call stack over primitive arrays,
+ * so deep graphs cannot overflow the thread stack. The Tarjan stack membership
+ * is tracked in a {@link BitSet}.
  *
  * @param <V> Vertex
  */
 public class GraphCycleDetector<V> {
 
-	private final DirectedGraph<V, ?> graph;
-	private int index = 1;
+	private final GraphIndex<V> graphIndex;
 	private final Collection<Deque<V>> cycles = Lists.newArrayList();
-	private final Deque<Vertex<V>> stack = Lists.newLinkedList();
-	private final ImmutableMap<V, Vertex<V>> nodeIndex;
-	
-	
+	private final List<int[]> components = Lists.newArrayList();
+	private volatile Collection<List<V>> shortestCycles;
+
+
 	public GraphCycleDetector(DirectedGraph<V, ?> graph) {
-		this.graph = graph;
-		List<Vertex<V>> vertices = Lists.newArrayList();
-		for (V node : graph.nodes()) {
-		  vertices.add(new Vertex<V>(node));
-		}
-		
-		nodeIndex = Maps.uniqueIndex(vertices, new Function<Vertex<V>, V>() {
-			@Override
-			public V apply(Vertex<V> input) {
-				return input.node;
-			}
-		});
-		
-		for (Vertex<V> v : vertices) {
-			if (v.index == 0) {
-				strongConnect(v);
-			}
-		}
+		this.graphIndex = GraphIndex.of(graph);
+		strongConnect();
 	}
 
 	/***
-	 * 
+	 *
 	 * @return Collection of all cycles in the graph. The trivial (self) cycles are NOT included.
+	 * Each cycle is represented by all the vertices of a strongly connected component.
 	 */
 	public Collection<Deque<V>> getNontrivialCycles() {
 		return cycles;
 	}
-	
-	private void strongConnect(Vertex<V> v) {
-		// Set the depth index for v to the smallest unused index
-		v.index = index;
-		v.lowLink = index;
-		index += 1;
-
-		stack.push(v);
-
-		// Consider successors of v
-		Collection<GraphCycleDetector.Vertex<V>> next = getNext(v);
-		for (Vertex<V> w : next) {
-			if (w.index == 0) {
-				// Successor w has not yet been visited; recurse on it
-				strongConnect(w);
-				v.lowLink = min(v.lowLink, w.lowLink);
-
-			} else if (stack.contains(w)) {
-				// Successor w is in stack S and hence in the current SCC
-				v.lowLink = min(v.lowLink, w.lowLink);
+
+	/**
+	 * Calculates a representative cycle for each non-trivial strongly connected component.
+	 * The cycle is the shortest one passing through the component root,
+	 * the first element of the respective {@link #getNontrivialCycles()} deque.
+	 *
+	 * @return Collection of cycle paths, e.g. [A, B, C, A]. The first vertex is repeated at the end.
+	 */
+	public Collection<List<V>> getShortestCycles() {
+		Collection<List<V>> result = shortestCycles;
+		if (result == null) {
+			result = Lists.newArrayList();
+			int[] component = new int[graphIndex.size()];
+			for (int i = 0; i < components.size(); i++) {
+				for (int id : components.get(i)) {
+					component[id] = i + 1;
+				}
 			}
+			int[] parent = new int[graphIndex.size()];
+			Arrays.fill(parent, -1);
+			int[] queue = new int[graphIndex.size()];
+			for (int i = 0; i < components.size(); i++) {
+				result.add(shortestCycle(components.get(i)[0], component, i + 1, parent, queue));
+			}
+			shortestCycles = result;
 		}
+		return result;
+	}
+
+	private void strongConnect() {
+		int size = graphIndex.size();
+		int[] index = new int[size];
+		int[] lowLink = new int[size];
+		BitSet onStack = new BitSet(size);
+		int[] stack = new int[size];
+		int stackSize = 0;
+
+		// the explicit recursion: visited vertex and position of the next successor
+		int[] callStack = new int[size];
+		int[] nextSuccessor = new int[size];
+		int depth = 0;
+		int counter = 1;
+
+		for (int root = 0; root < size; root++) {
+			if (index[root] != 0) {
+				continue;
+			}
 
-		// If v is a root node, pop the stack and generate an SCC
-		if (v.lowLink == v.index) {
-			Deque<V> scc = Lists.newLinkedList();
-			Vertex<V> w;
-			do {
-				w = stack.pop();
-				scc.push(w.node);
-			} while (w != v);
-			
-			
-			if (scc.size() > 1) {
-				cycles.add(scc);
+			callStack[depth] = root;
+			nextSuccessor[depth++] = 0;
+			// Set the depth index for v to the smallest unused index
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack.set(root);
+
+			while (depth > 0) {
+				int v = callStack[depth - 1];
+
+				// Consider successors of v
+				if (nextSuccessor[depth - 1] < graphIndex.outDegree(v)) {
+					int w = graphIndex.successor(v, nextSuccessor[depth - 1]++);
+					if (index[w] == 0) {
+						// Successor w has not yet been visited; recurse on it
+						callStack[depth] = w;
+						nextSuccessor[depth++] = 0;
+						index[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack.set(w);
+
+					} else if (onStack.get(w)) {
+						// Successor w is in stack S and hence in the current SCC
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+					continue;
+				}
+
+				// return from the recursion
+				depth--;
+				if (depth > 0) {
+					int u = callStack[depth - 1];
+					lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+				}
+
+				// If v is a root node, pop the stack and generate an SCC
+				if (lowLink[v] == index[v]) {
+					int start = stackSize;
+					do {
+						onStack.clear(stack[--start]);
+					} while (stack[start] != v);
+
+					if (stackSize - start > 1) {
+						Deque<V> scc = new ArrayDeque<>(stackSize - start);
+						for (int i = start; i < stackSize; i++) {
+							scc.add(graphIndex.vertex(stack[i]));
+						}
+						cycles.add(scc);
+						components.add(Arrays.copyOfRange(stack, start, stackSize));
+					}
+					stackSize = start;
+				}
 			}
 		}
 	}
-	  
-	private Set<Vertex<V>> getNext(Vertex<V> v) {
-		return graph.successors(v.node, new Function<V, Vertex<V>>() {
-			@Override
-			public Vertex<V> apply(V input) {
-				return getVertex(input);
+
+	/**
+	 * Breadth first search restricted to the component.
+	 * The parent array is left cleared (-1) for the next search.
+	 */
+	private List<V> shortestCycle(int root, int[] component, int componentId, int[] parent, int[] queue) {
+		List<V> result = null;
+		int head = 0;
+		int tail = 0;
+
+		queue[tail++] = root;
+		parent[root] = root;
+		search: while (head < tail) {
+			int v = queue[head++];
+			for (int i = 0, count = graphIndex.outDegree(v); i < count; i++) {
+				int w = graphIndex.successor(v, i);
+				if (w == root) {
+					result = cyclePath(root, v, parent);
+					break search;
+				} else if (component[w] == componentId && parent[w] < 0) {
+					parent[w] = v;
+					queue[tail++] = w;
+				}
 			}
-		});
-	}
-		  
-	
-	private <T> Vertex<V> getVertex(V node) {
-		return nodeIndex.get(node);
-	}
-	  
-	private static class Vertex<V> {
-		public int index;
-		public int lowLink;
-		private final V node;
-
-		public Vertex(V node) {
-			this.node = node;
-			this.index = 0;
-			this.lowLink = 0;
 		}
 
-		@Override
-		public String toString() {
-			return String.format("%s %d.%d", node, index, lowLink);
+		for (int i = 0; i < tail; i++) {
+			parent[queue[i]] = -1;
+		}
+		if (result == null) {
+			throw new IllegalStateException("Not a strongly connected component: " + graphIndex.vertex(root));
+		}
+		return result;
+	}
+
+	private List<V> cyclePath(int root, int last, int[] parent) {
+		Deque<V> path = new ArrayDeque<>();
+		path.addFirst(graphIndex.vertex(root));
+		for (int v = last; v != root; v = parent[v]) {
+			path.addFirst(graphIndex.vertex(v));
 		}
+		path.addFirst(graphIndex.vertex(root));
+		return ImmutableList.copyOf(path);
 	}
-	
+
 }
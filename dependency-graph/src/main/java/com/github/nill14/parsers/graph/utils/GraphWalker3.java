@@ -103,6 +103,9 @@ public class GraphWalker3<V> implements GraphWalker<V> {
 					V vertex = topoList.get(i);
 					if (doStartIfPossible(vertex)) {
 						topoList.remove(i);
+						//the following elements were shifted, continue from the same index
+						//unless onComplete has meanwhile reset the index
+						lastIndex.compareAndSet(i + 1, i);
 						return vertex;
 					}
 					i = lastIndex.getAndIncrement();
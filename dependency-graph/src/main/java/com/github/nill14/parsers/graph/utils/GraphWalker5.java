@@ -0,0 +1,195 @@
+package com.github.nill14.parsers.graph.utils;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.GraphWalker;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+
+
+/**
+ * Counter based walker. Each vertex keeps the count of uncompleted predecessors
+ * in an {@link AtomicIntegerArray} indexed by the vertex position in the topological order.
+ * The vertex whose counter drops to zero is pushed to a lock-free ready set.
+ * The ready vertices are released in the topological order, i.e. by module rankings
+ * when the order is sorted by rankings.
+ * <p>
+ * Neither completion nor release takes a global lock.
+ *
+ */
+public class GraphWalker5<V> implements GraphWalker<V> {
+
+	private final Lock exceptionLock = new ReentrantLock();
+	private volatile ExecutionException exception;
+
+	private final GraphIndex<V> index;
+	private final AtomicIntegerArray blockers;
+	private final ConcurrentSkipListSet<Integer> ready = new ConcurrentSkipListSet<>();
+
+	private final Semaphore available = new Semaphore(0);
+	private final Semaphore countDown;
+	private final Semaphore parallelism;
+	private final int parallelismLimit;
+
+	public <E extends GraphEdge<V>> GraphWalker5(DirectedGraph<V, E> graph, List<V> topoList, int parallelism) {
+		this(GraphIndex.of(graph, topoList), parallelism);
+	}
+
+	/**
+	 * @param index The graph index with vertex ids assigned in topological order
+	 * @param parallelism the maximum amount of concurrently released vertices
+	 */
+	public GraphWalker5(GraphIndex<V> index, int parallelism) {
+		this.index = index;
+		int size = index.size();
+		blockers = new AtomicIntegerArray(size);
+		for (int id = 0; id < size; id++) {
+			int count = index.inDegree(id);
+			if (count == 0) {
+				ready.add(id);
+			} else {
+				blockers.set(id, count);
+			}
+		}
+		available.release(ready.size());
+		countDown = new Semaphore(-size + 1);
+		this.parallelism = new Semaphore(parallelism);
+		this.parallelismLimit = parallelism;
+	}
+
+	@Override
+	public V releaseNext() throws ExecutionException {
+		try {
+			parallelism.acquire();
+			available.acquire();
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		}
+		checkFailure();
+		return index.vertex(ready.pollFirst());
+	}
+
+	/**
+	 * Releases up to maxSize ready vertices at once or blocks until one is available.
+	 * The batch is limited by the share of a single parallelism permit in the ready vertices,
+	 * hence the ready vertices still spread over all the permits.
+	 * The whole batch takes a single parallelism permit, the vertices are completed
+	 * by {@link #onBatchMemberComplete(Object)} and the permit is returned by {@link #onBatchComplete()}.
+	 * @param batch The list receiving the released vertices
+	 * @param maxSize the maximum amount of released vertices
+	 * @return the amount of released vertices, at least one
+	 * @throws ExecutionException when a vertex was not completed successfully.
+	 */
+	public int releaseBatch(List<? super V> batch, int maxSize) throws ExecutionException {
+		try {
+			parallelism.acquire();
+			available.acquire();
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		}
+		checkFailure();
+		batch.add(index.vertex(ready.pollFirst()));
+		int count = 1;
+		int limit = Math.min(maxSize, 1 + available.availablePermits() / parallelismLimit);
+		while (count < limit && available.tryAcquire()) {
+			Integer id = ready.pollFirst();
+			if (id == null) {
+				break; // the permits were released by a failure
+			}
+			batch.add(index.vertex(id));
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void onComplete(V vertex) {
+		onBatchMemberComplete(vertex);
+		parallelism.release();
+	}
+
+	/**
+	 * Marks the vertex as completed without returning the parallelism permit, see {@link #releaseBatch(List, int)}
+	 * @param vertex The vertex to be marked complete
+	 */
+	public void onBatchMemberComplete(V vertex) {
+		int id = index.indexOf(vertex);
+		if (id < 0) {
+			throw new IllegalArgumentException("Unknown vertex, cannot complete: "+vertex);
+		}
+
+		int released = 0;
+		for (int i = 0, count = index.outDegree(id); i < count; i++) {
+			int successor = index.successor(id, i);
+			if (blockers.decrementAndGet(successor) == 0) {
+				ready.add(successor);
+				released++;
+			}
+		}
+
+		if (released > 0) {
+			available.release(released);
+		}
+		countDown.release();
+	}
+
+	/**
+	 * Returns the parallelism permit of a completed batch
+	 */
+	public void onBatchComplete() {
+		parallelism.release();
+	}
+
+	@Override
+	public void onFailure(V vertex, Exception e) {
+		try {
+			exceptionLock.lock();
+			if (exception == null) {
+				exception = new ExecutionException(e);
+			} else {
+				exception.addSuppressed(e);
+			}
+		} finally {
+			exceptionLock.unlock();
+		}
+		// wake up the releasing thread
+		available.release(size());
+		countDown.release(size());
+		parallelism.release();
+	}
+
+	@Override
+	public boolean isCompleted() {
+		return countDown.availablePermits() > 0;
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	private void checkFailure() throws ExecutionException {
+		ExecutionException exception = this.exception;
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	@Override
+	public void awaitCompletion() throws ExecutionException {
+		try {
+			countDown.acquire();
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		}
+		checkFailure();
+	}
+
+}
@@ -1,73 +1,76 @@
 package com.github.nill14.parsers.graph.utils;
 
-import static java.lang.Math.*;
-
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Deque;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import com.github.nill14.parsers.graph.CyclicGraphException;
 import com.github.nill14.parsers.graph.DirectedGraph;
 import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
 import com.google.common.base.Function;
-import com.google.common.collect.FluentIterable;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 /**
- * 
+ * Iterative (Kahn's algorithm) topological sort along with longest path rankings.
+ * Runs in O(V+E) with primitive arrays only, hence deep graphs don't need a bigger stack.
  */
 public class LongestPathTopoSorter<V, E extends GraphEdge<V>> {
 
+	private static final Function<Object, Integer> UNIT_EDGE_COST = new Function<Object, Integer>() {
+		@Override
+		public Integer apply(Object input) {
+			return 1;
+		}
+	};
+
+	private static final Function<Object, Integer> ZERO_EDGE_COST = new Function<Object, Integer>() {
+		@Override
+		public Integer apply(Object input) {
+			return 0;
+		}
+	};
+
+	private static final Function<Object, Integer> ZERO_PRIORITY = new Function<Object, Integer>() {
+		@Override
+		public Integer apply(Object input) {
+			return 0;
+		}
+	};
+
 	private final DirectedGraph<V, E> graph;
-	private final ImmutableMap<V, Vertex<V>> nodeIndex;
-	private final Function<E, Integer> edgeEval;
-	private final List<Vertex<V>> vertices;
-	
-	
+	private final GraphIndex<V> index;
+	private final Function<? super E, Integer> edgeEval;
+
+
 	public LongestPathTopoSorter(DirectedGraph<V, E> acyclicDirectedGraph) {
-		this(acyclicDirectedGraph, new Function<E, Integer>() {
-			@Override
-			public Integer apply(E input) {
-				return 1;
-			}
-		});
+		this(acyclicDirectedGraph, UNIT_EDGE_COST);
 	}
-	
-	public LongestPathTopoSorter(DirectedGraph<V, E> acyclicDirectedGraph, Function<E, Integer> edgeEval) {
+
+	public LongestPathTopoSorter(DirectedGraph<V, E> acyclicDirectedGraph, Function<? super E, Integer> edgeEval) {
 		this.graph = acyclicDirectedGraph;
 		this.edgeEval = edgeEval;
-		vertices = Lists.newArrayList();
-		for (V node : graph.nodes()) {
-		  vertices.add(new Vertex<V>(node));
-		}
-		
-		nodeIndex = Maps.uniqueIndex(vertices, new Function<Vertex<V>, V>() {
-			@Override
-			public V apply(Vertex<V> input) {
-				return input.node;
-			}
-		});
+		this.index = GraphIndex.of(acyclicDirectedGraph);
+	}
+
+	/**
+	 * The edges cost nothing, hence the longest path of a vertex is the sum of the priorities along the path.
+	 * The vertices of equal depth keep the topological order.
+	 * @param <V> Vertex
+	 * @param <E> Edge
+	 * @param acyclicDirectedGraph A directed acyclic graph
+	 * @return a sorter of the weighted longest paths
+	 */
+	public static <V, E extends GraphEdge<V>> LongestPathTopoSorter<V, E> withZeroEdgeCost(DirectedGraph<V, E> acyclicDirectedGraph) {
+		return new LongestPathTopoSorter<>(acyclicDirectedGraph, ZERO_EDGE_COST);
 	}
-	
+
 	/**
 	 * The result is topologically sorted
 	 * @return A set of (Vertex, count) pairs
 	 * @throws CyclicGraphException when the graph contains cycles
 	 */
 	public LinkedHashMap<V, Integer> getLongestPathMap() throws CyclicGraphException {
-		return getLongestPathMap(new Function<V, Integer>() {
-			@Override
-			public Integer apply(V input) {
-				return 0;
-			}
-		});
+		return getLongestPathMap(ZERO_PRIORITY);
 	}
 
 	/**
@@ -76,45 +79,81 @@ public class LongestPathTopoSorter<V, E extends GraphEdge<V>> {
 	 * @return A set of (Vertex, count) pairs
 	 * @throws CyclicGraphException when the graph contains cycles
 	 */
-	public LinkedHashMap<V, Integer> getLongestPathMap(Function<V, Integer> priorityFunction) throws CyclicGraphException {
-		LinkedList<Vertex<V>> vertices = topologicalOrdering();
-		Collections.reverse(vertices);
-		for (Vertex<V> v : vertices) {
-			visitCount(v, priorityFunction);
-		}
-		
-		Collections.sort(vertices, new Comparator<Vertex<V>>() {
-            @Override
-            public int compare(Vertex<V> o1, Vertex<V> o2) {
-              return o2.depth - o1.depth;
-            }
-		});
-		
+	public LinkedHashMap<V, Integer> getLongestPathMap(Function<? super V, Integer> priorityFunction) throws CyclicGraphException {
+		int[] order = topologicalOrdering();
+		int[] depth = new int[order.length];
+		int maxDepth = 0;
+
+		// successors first
+		for (int i = order.length - 1; i >= 0; i--) {
+			int id = order[i];
+			int max = index.outDegree(id) == 0 ? 0 : maxSuccessorDepth(id, depth);
+			depth[id] = max + evalPriority(index.vertex(id), priorityFunction);
+			maxDepth = Math.max(maxDepth, depth[id]);
+		}
+
+		int[] sorted = sortByDepthDescending(order, depth, maxDepth);
 		LinkedHashMap<V, Integer> result = new LinkedHashMap<>();
-		for (Vertex<V> v : vertices) {
-			result.put(v.node, v.depth);
+		for (int id : sorted) {
+			result.put(index.vertex(id), depth[id]);
 		}
 		return result;
 	}
-	
-	private void visitCount(Vertex<V> n, Function<V, Integer> nodePriority) {
-		int nodeValue = evalPriority(n, nodePriority);
-		Collection<E> next = getNextEdges(n);
-		if (next.isEmpty()) {
-			n.depth = nodeValue;
+
+	private int maxSuccessorDepth(int id, int[] depth) {
+		int max = 0;
+		if (edgeEval == UNIT_EDGE_COST || edgeEval == ZERO_EDGE_COST) {
+			int cost = edgeEval == UNIT_EDGE_COST ? 1 : 0;
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				max = Math.max(max, cost + depth[index.successor(id, i)]);
+			}
 		} else {
-			int max = 0;
-			for (E edge : next) {
-				Vertex<V> m = getVertex(edge.target());
-				int count = evalEdge(edge) + m.depth;
-				max = max(max, count);
+			for (E edge : graph.successorEdges(index.vertex(id))) {
+				int target = index.indexOf(edge.target());
+				max = Math.max(max, evalEdge(edge) + depth[target]);
 			}
-			n.depth = max + nodeValue;
+		}
+		return max;
+	}
+
+	/**
+	 * Stable sort of the topological order by depth descendingly.
+	 * The depths are bounded by path length and priority range,
+	 * so a linear counting sort is used unless the edge costs make the range too wide.
+	 * The radix sort is used in such a case.
+	 */
+	private int[] sortByDepthDescending(int[] order, int[] depth, int maxDepth) {
+		int[] keys = new int[order.length];
+		for (int id = 0; id < depth.length; id++) {
+			keys[id] = maxDepth - depth[id];
+		}
+
+		if (maxDepth <= 2 * order.length + 100000) {
+			return countingSort(order, keys, 0, -1, maxDepth + 1);
+		} else {
+			int[] low = countingSort(order, keys, 0, 0xFFFF, 1 << 16);
+			return countingSort(low, keys, 16, 0xFFFF, 1 << 16);
 		}
 	}
-	
+
+	private static int[] countingSort(int[] ids, int[] keys, int shift, int mask, int range) {
+		int[] offsets = new int[range + 1];
+		for (int id : ids) {
+			offsets[((keys[id] >>> shift) & mask) + 1]++;
+		}
+		for (int i = 0; i < range; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] result = new int[ids.length];
+		for (int id : ids) {
+			result[offsets[(keys[id] >>> shift) & mask]++] = id;
+		}
+		return result;
+	}
+
 	/**
-	 * 
+	 *
 	 * @param edge
 	 * @return default is 1
 	 */
@@ -125,21 +164,24 @@ public class LongestPathTopoSorter<V, E extends GraphEdge<V>> {
 		}
 		return val;
 	}
-	
+
 	/**
 	 * @param edge
 	 * @return default is 0
 	 */
-	private int evalPriority(Vertex<V> n, Function<V, Integer> nodePriority) {
-		int val = nodePriority.apply(n.node);
+	private int evalPriority(V node, Function<? super V, Integer> nodePriority) {
+		if (nodePriority == ZERO_PRIORITY) {
+			return 0;
+		}
+		int val = nodePriority.apply(node);
 		if (val < 0 || val > 100000) {
-			throw new IllegalArgumentException(String.format("Node %s priority must be in range 0..100000: %s", n.node, val));
+			throw new IllegalArgumentException(String.format("Node %s priority must be in range 0..100000: %s", node, val));
 		}
 		return val;
 	}
-	
+
 	/**
-	 * 
+	 *
 	 * @return a topologically ordered list
 	 * @throws CyclicGraphException when the graph contains cycles
 	 */
@@ -148,97 +190,60 @@ public class LongestPathTopoSorter<V, E extends GraphEdge<V>> {
 	}
 
 	/**
-	 * 
+	 *
 	 * @return a topologically ordered list
 	 * @throws CyclicGraphException when the graph contains cycles
 	 */
 	public List<V> getTopologicalOrdering() throws CyclicGraphException {
-		return FluentIterable.from(topologicalOrdering())
-			.transform(new Function<Vertex<V>, V>() {
-
-				@Override
-				public V apply(Vertex<V> input) {
-					return input.node;
-				}
-			}).toList();
+		ImmutableList.Builder<V> builder = ImmutableList.builder();
+		for (int id : topologicalOrdering()) {
+			builder.add(index.vertex(id));
+		}
+		return builder.build();
 	}
-	
-	
+
+
 //	L ← Empty list that will contain the sorted nodes
-//	while there are unmarked nodes do
-//	    select an unmarked node n
-//	    visit(n) 
-//	function visit(node n)
-//	    if n has a temporary mark then stop (not a DAG)
-//	    if n is not marked (i.e. has not been visited yet) then
-//	        mark n temporarily
-//	        for each node m with an edge from n to m do
-//	            visit(m)
-//	        mark n permanently
-//	        unmark n temporarily
-//	        add n to head of L
-	
-	private LinkedList<Vertex<V>> topologicalOrdering() throws CyclicGraphException {
-		LinkedList<Vertex<V>> list = Lists.newLinkedList();
-		Set<Vertex<V>> visited = Sets.newHashSet();
-		
-		for (Vertex<V> v : vertices) {
-			visitUnsorted(v, visited, list);
-		}
-		
-		return list;
-	}
-	
-	private void visitUnsorted(Vertex<V> n, Set<Vertex<V>> visited, Deque<Vertex<V>> list) throws CyclicGraphException {
-		if (n.tempMark) {
-			throw new CyclicGraphException(graph,
-					"is not DAG - directed acyclic graph - contains cycles");
-		} else if (visited.contains(n)) {
-			return;
-		} else {
-			n.tempMark = true;
-			Collection<Vertex<V>> next = getNext(n);
-			for (Vertex<V> m : next) {
-				visitUnsorted(m, visited, list);
+//	S ← Set of all nodes with no incoming edges
+//	while S is non-empty do
+//	    remove a node n from S
+//	    add n to tail of L
+//	    for each node m with an edge e from n to m do
+//	        remove edge e from the graph
+//	        if m has no other incoming edges then
+//	            insert m into S
+//	if graph has edges then
+//	    return error (graph has at least one cycle)
+
+	private int[] topologicalOrdering() throws CyclicGraphException {
+		int size = index.size();
+		int[] inDegree = new int[size];
+		// the result doubles as the FIFO queue S
+		int[] order = new int[size];
+		int tail = 0;
+
+		for (int id = 0; id < size; id++) {
+			inDegree[id] = index.inDegree(id);
+			if (inDegree[id] == 0) {
+				order[tail++] = id;
 			}
-			visited.add(n);
-			n.tempMark = false;
-			list.push(n);
 		}
-	}
-	  
-	private Set<Vertex<V>> getNext(Vertex<V> v) {
-		return graph.successors(v.node, new Function<V, Vertex<V>>() {
-			@Override
-			public Vertex<V> apply(V input) {
-				return getVertex(input);
+
+		for (int head = 0; head < tail; head++) {
+			int id = order[head];
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				int successor = index.successor(id, i);
+				if (--inDegree[successor] == 0) {
+					order[tail++] = successor;
+				}
 			}
-		});
-	}
-	
-	private Collection<E> getNextEdges(Vertex<V> v) {
-		return graph.successorEdges(v.node);
-	}
-	
-	private <T> Vertex<V> getVertex(V node) {
-		return nodeIndex.get(node);
-	}
-	  
-	private static class Vertex<V> {
-		public int depth;
-		public boolean tempMark;
-		private final V node;
-
-		public Vertex(V node) {
-			this.node = node;
-			this.depth = 0;
-			this.tempMark = false;
-		}
-		
-		@Override
-		public String toString() {
-			return String.format("%s %d %b", node, depth, tempMark);
 		}
+
+		if (tail < size) {
+			throw new CyclicGraphException(graph,
+					"is not DAG - directed acyclic graph - contains cycles");
+		}
+		return order;
 	}
-	
+
 }
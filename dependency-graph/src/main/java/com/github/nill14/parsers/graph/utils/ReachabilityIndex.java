@@ -0,0 +1,139 @@
+package com.github.nill14.parsers.graph.utils;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * Transitive predecessors (ancestors) of each vertex kept in bitsets over topological ids.
+ * <p>
+ * As all the ancestors of a vertex precede the vertex in the topological order,
+ * the bitset of vertex v has just v bits. The index is built in a single pass
+ * over the topological order: the ancestors of v are the union of its predecessors
+ * and their ancestors.
+ * The index is immutable and therefore thread-safe.
+ *
+ * @param <V> Vertex
+ */
+public final class ReachabilityIndex<V> {
+
+	private final GraphIndex<V> index;
+	private final long[][] ancestors;
+
+	/**
+	 * @param topologicalIndex The graph index with vertex ids assigned in topological order
+	 * @throws IllegalArgumentException when the vertex ids are not topologically ordered
+	 */
+	public ReachabilityIndex(GraphIndex<V> topologicalIndex) {
+		this.index = topologicalIndex;
+		int size = index.size();
+		ancestors = new long[size][];
+
+		for (int id = 0; id < size; id++) {
+			long[] bits = new long[(id + 63) >>> 6];
+			for (int i = 0, count = index.inDegree(id); i < count; i++) {
+				int predecessor = index.predecessor(id, i);
+				if (predecessor >= id) {
+					throw new IllegalArgumentException("The index is not topologically ordered: " + index.vertex(id));
+				}
+				long[] other = ancestors[predecessor];
+				for (int j = 0; j < other.length; j++) {
+					bits[j] |= other[j];
+				}
+				bits[predecessor >>> 6] |= 1L << predecessor;
+			}
+			ancestors[id] = bits;
+		}
+	}
+
+	/**
+	 * @param ancestor vertex id
+	 * @param vertex vertex id
+	 * @return whether there is a path from the ancestor to the vertex
+	 */
+	public boolean isAncestor(int ancestor, int vertex) {
+		return ancestor < vertex && (ancestors[vertex][ancestor >>> 6] & (1L << ancestor)) != 0;
+	}
+
+	/**
+	 * @param vertex a vertex
+	 * @return an unmodifiable view of all transitive predecessors, empty for an unknown vertex
+	 */
+	public Set<V> ancestors(V vertex) {
+		int id = index.indexOf(vertex);
+		return new AncestorSet(id < 0 ? new long[0] : ancestors[id]);
+	}
+
+	private final class AncestorSet extends AbstractSet<V> {
+
+		private final long[] bits;
+
+		public AncestorSet(long[] bits) {
+			this.bits = bits;
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new UnmodifiableIterator<V>() {
+				private int next = nextBit(0);
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public V next() {
+					if (next < 0) {
+						throw new NoSuchElementException();
+					}
+					V vertex = index.vertex(next);
+					next = nextBit(next + 1);
+					return vertex;
+				}
+			};
+		}
+
+		private int nextBit(int from) {
+			int word = from >>> 6;
+			if (word >= bits.length) {
+				return -1;
+			}
+			long w = bits[word] & (-1L << from);
+			while (true) {
+				if (w != 0) {
+					return (word << 6) + Long.numberOfTrailingZeros(w);
+				}
+				if (++word == bits.length) {
+					return -1;
+				}
+				w = bits[word];
+			}
+		}
+
+		@Override
+		public int size() {
+			int size = 0;
+			for (long w : bits) {
+				size += Long.bitCount(w);
+			}
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return nextBit(0) < 0;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			int id = index.indexOf(o);
+			return id >= 0 && (id >>> 6) < bits.length && (bits[id >>> 6] & (1L << id)) != 0;
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.github.nill14.parsers.graph.utils;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.nill14.parsers.graph.GraphWalker;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+
+
+/**
+ * Counter based walker with limited resources. Each vertex may hold permits of some resources while running,
+ * each resource has a limited count of permits. The first ready vertex in the topological order
+ * whose resources are all available is released, the vertices waiting for a busy resource are skipped over.
+ * The vertices without limited resources are constrained by the parallelism only.
+ * <p>
+ * The state is guarded by a single lock, the release scans the ready vertices.
+ *
+ */
+public class ResourceGraphWalker<V> implements GraphWalker<V> {
+
+	private final Lock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	private final GraphIndex<V> index;
+	private final int[][] resources;
+	private final int[] available;
+	private final int[] blockers;
+	private final TreeSet<Integer> ready = new TreeSet<>();
+	private final int parallelism;
+
+	private int running = 0;
+	private int completed = 0;
+	private ExecutionException exception;
+
+	/**
+	 * @param index The graph index with vertex ids assigned in topological order
+	 * @param parallelism the maximum amount of concurrently released vertices
+	 * @param resources The resource ids held by each vertex, indexed by the vertex id
+	 * @param limits The count of permits of each resource, indexed by the resource id
+	 */
+	public ResourceGraphWalker(GraphIndex<V> index, int parallelism, int[][] resources, int[] limits) {
+		this.index = index;
+		this.parallelism = parallelism;
+		this.resources = resources;
+		this.available = limits.clone();
+		for (int limit : limits) {
+			if (limit < 1) {
+				throw new IllegalArgumentException("Resource limit must be positive: " + limit);
+			}
+		}
+
+		int size = index.size();
+		blockers = new int[size];
+		for (int id = 0; id < size; id++) {
+			blockers[id] = index.inDegree(id);
+			if (blockers[id] == 0) {
+				ready.add(id);
+			}
+		}
+	}
+
+	@Override
+	public V releaseNext() throws ExecutionException {
+		lock.lock();
+		try {
+			while (true) {
+				checkFailure();
+				if (running < parallelism) {
+					int id = pollReleasable();
+					if (id >= 0) {
+						running++;
+						return index.vertex(id);
+					}
+				}
+				changed.await();
+			}
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int pollReleasable() {
+		Iterator<Integer> iterator = ready.iterator();
+		candidates: while (iterator.hasNext()) {
+			int id = iterator.next();
+			for (int resource : resources[id]) {
+				if (available[resource] == 0) {
+					continue candidates;
+				}
+			}
+			for (int resource : resources[id]) {
+				available[resource]--;
+			}
+			iterator.remove();
+			return id;
+		}
+		return -1;
+	}
+
+	private int finish(V vertex) {
+		int id = index.indexOf(vertex);
+		if (id < 0) {
+			throw new IllegalArgumentException("Unknown vertex, cannot complete: "+vertex);
+		}
+		for (int resource : resources[id]) {
+			available[resource]++;
+		}
+		running--;
+		return id;
+	}
+
+	@Override
+	public void onComplete(V vertex) {
+		lock.lock();
+		try {
+			int id = finish(vertex);
+			for (int i = 0, count = index.outDegree(id); i < count; i++) {
+				int successor = index.successor(id, i);
+				if (--blockers[successor] == 0) {
+					ready.add(successor);
+				}
+			}
+			completed++;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onFailure(V vertex, Exception e) {
+		lock.lock();
+		try {
+			finish(vertex);
+			if (exception == null) {
+				exception = new ExecutionException(e);
+			} else {
+				exception.addSuppressed(e);
+			}
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isCompleted() {
+		lock.lock();
+		try {
+			return completed == index.size() || exception != null && running == 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	private void checkFailure() throws ExecutionException {
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Blocks until all vertices are completed or, after a failure, until the running vertices are finished.
+	 */
+	@Override
+	public void awaitCompletion() throws ExecutionException {
+		lock.lock();
+		try {
+			while (!isCompleted()) {
+				changed.await();
+			}
+			checkFailure();
+		} catch (InterruptedException e) {
+			throw new ExecutionException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
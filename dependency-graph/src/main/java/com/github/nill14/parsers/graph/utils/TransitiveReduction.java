@@ -0,0 +1,146 @@
+package com.github.nill14.parsers.graph.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.nill14.parsers.graph.CyclicGraphException;
+import com.github.nill14.parsers.graph.DirectedGraph;
+import com.github.nill14.parsers.graph.GraphEdge;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Transitive reduction of a directed acyclic graph: the edge u -&gt; v is dropped
+ * when v is reachable from u by another path. The reachability is preserved.
+ * <p>
+ * The edge p -&gt; v is redundant exactly when p is an ancestor of another predecessor of v.
+ * The ancestors are kept in bitsets over topological ids, the same way as {@link ReachabilityIndex},
+ * but only for a block of {@value #BLOCK_BITS} ancestor ids at a time.
+ * Hence the memory is bounded by V * {@value #BLOCK_BITS} / 8 bytes rather than V²/16 bytes,
+ * a single buffer is allocated and reused by the blocks,
+ * the time is O(E * V / 64) word operations in the worst case.
+ */
+public final class TransitiveReduction {
+
+	private static final int BLOCK_BITS = 4096;
+
+	private TransitiveReduction() {
+	}
+
+	/**
+	 * @param <V> Vertex
+	 * @param <E> Edge
+	 * @param graph A directed acyclic graph
+	 * @return a new graph with the same vertices and the edges not implied by other paths
+	 * @throws CyclicGraphException when the graph contains cycles
+	 */
+	public static <V, E extends GraphEdge<V>> DirectedGraph<V, E> reduce(DirectedGraph<V, E> graph) throws CyclicGraphException {
+		List<V> order = new LongestPathTopoSorter<>(graph).getTopologicalOrdering();
+		GraphIndex<V> reduced = reduce(GraphIndex.of(graph, order));
+
+		ImmutableSet.Builder<E> edges = ImmutableSet.builder();
+		for (E edge : graph.edges()) {
+			int source = reduced.indexOf(edge.source());
+			if (reduced.successorSet(source).contains(edge.target())) {
+				edges.add(edge);
+			}
+		}
+		return CompactDirectedGraph.<V, E>builder()
+			.nodes(graph.nodes())
+			.edges(edges.build())
+			.build();
+	}
+
+	/**
+	 * @param <V> Vertex
+	 * @param topologicalIndex The graph index with vertex ids assigned in topological order
+	 * @return an index with the same vertex ids and the edges not implied by other paths
+	 * @throws IllegalArgumentException when the vertex ids are not topologically ordered
+	 */
+	public static <V> GraphIndex<V> reduce(GraphIndex<V> topologicalIndex) {
+		GraphIndex<V> index = topologicalIndex;
+		int size = index.size();
+
+		// the predecessor slices, one bit per edge
+		int[] offsets = new int[size + 1];
+		for (int id = 0; id < size; id++) {
+			offsets[id + 1] = offsets[id] + index.inDegree(id);
+			for (int i = 0, count = index.inDegree(id); i < count; i++) {
+				if (index.predecessor(id, i) >= id) {
+					throw new IllegalArgumentException("The index is not topologically ordered: " + index.vertex(id));
+				}
+			}
+		}
+		long[] redundant = new long[(offsets[size] + 63) >>> 6];
+
+		// sized by the first block, the later blocks have fewer rows and at most as many words per row
+		long[] ancestors = new long[size * ((Math.min(size, BLOCK_BITS) + 63) >>> 6)];
+		for (int from = 0; from < size; from += BLOCK_BITS) {
+			markRedundant(index, offsets, redundant, ancestors, from, Math.min(size, from + BLOCK_BITS));
+		}
+
+		int[] sources = new int[offsets[size]];
+		int[] targets = new int[offsets[size]];
+		int edgeCount = 0;
+		for (int id = 0; id < size; id++) {
+			for (int i = 0, count = index.inDegree(id); i < count; i++) {
+				int pos = offsets[id] + i;
+				if ((redundant[pos >>> 6] & (1L << pos)) == 0) {
+					sources[edgeCount] = index.predecessor(id, i);
+					targets[edgeCount++] = id;
+				}
+			}
+		}
+		return edgeCount == offsets[size] ? index : index.withEdges(sources, targets, edgeCount);
+	}
+
+	/**
+	 * Marks the edges whose source is in range from..to-1 and is an ancestor of another predecessor of the target.
+	 * The ancestors within the range are computed for the vertices from the range start on,
+	 * the vertices before it have no ancestors in the range.
+	 * The ancestor buffer is shared by the blocks, just the rows in use are cleared.
+	 */
+	private static void markRedundant(GraphIndex<?> index, int[] offsets, long[] redundant, long[] ancestors, 
+			int from, int to) {
+		int size = index.size();
+		int words = (to - from + 63) >>> 6;
+		Arrays.fill(ancestors, 0, (size - from) * words, 0L);
+
+		for (int id = from; id < size; id++) {
+			int row = (id - from) * words;
+			int count = index.inDegree(id);
+
+			// the union of the ancestors of all predecessors
+			for (int i = 0; i < count; i++) {
+				int predecessor = index.predecessor(id, i);
+				if (predecessor >= from) {
+					int other = (predecessor - from) * words;
+					for (int j = 0; j < words; j++) {
+						ancestors[row + j] |= ancestors[other + j];
+					}
+				}
+			}
+
+			for (int i = 0; i < count; i++) {
+				int bit = index.predecessor(id, i) - from;
+				if (bit >= 0 && bit < to - from) {
+					long mask = 1L << bit;
+					if ((ancestors[row + (bit >>> 6)] & mask) != 0) {
+						int pos = offsets[id] + i;
+						redundant[pos >>> 6] |= 1L << pos;
+					}
+				}
+			}
+
+			// the predecessors themselves are the ancestors too
+			for (int i = 0; i < count; i++) {
+				int bit = index.predecessor(id, i) - from;
+				if (bit >= 0 && bit < to - from) {
+					ancestors[row + (bit >>> 6)] |= 1L << bit;
+				}
+			}
+		}
+	}
+
+}
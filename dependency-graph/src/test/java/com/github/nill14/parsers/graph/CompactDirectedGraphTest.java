@@ -0,0 +1,255 @@
+package com.github.nill14.parsers.graph;
+
+import static org.testng.Assert.*;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
+import com.github.nill14.parsers.dependency.IDependencyDescriptor;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.DirectedGraphView;
+import com.github.nill14.parsers.graph.impl.EvaluatedGraphEdge;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class CompactDirectedGraphTest {
+
+	private DirectedGraph<Module, GraphEdge<Module>> graph;
+	private CompactDirectedGraph<Module, GraphEdge<Module>> compactGraph;
+	private Set<Module> modules;
+
+	@BeforeMethod
+	public void init() throws UnsatisfiedDependencyException {
+		modules = ImmutableSet.of(
+			Module.builder("A")
+				.provides("A")
+				.uses("M")
+				.buildModule(),
+			Module.builder("B")
+				.uses("A")
+				.buildModule(),
+			Module.builder("C")
+				.uses("A")
+				.uses("B")
+				.buildModule(),
+
+			//not connected
+			Module.builder("D")
+				.buildModule(),
+
+			Module.builder("E")
+				.provides("X")
+				.buildModule(),
+			Module.builder("F")
+				.uses("E")
+				.uses("X")
+				.buildModule(),
+			Module.builder("G")
+				.uses("F")
+				.buildModule(),
+
+			Module.builder("H")
+				.uses("C")
+				.buildModule(),
+			Module.builder("I")
+				.uses("C")
+				.buildModule(),
+			Module.builder("J")
+				.provides("A")
+				.buildModule(),
+
+			Module.builder("M")
+				.buildModule()
+		);
+
+		graph = DependencyGraphFactory.newGraph(modules, Module.adapterFunction);
+		compactGraph = CompactDirectedGraph.copyOf(graph);
+	}
+
+	private Module find(String name) {
+		for (Module module : modules) {
+			if (module.getName().equals(name)) {
+				return module;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private void assertView(DirectedGraph<Module, GraphEdge<Module>> view, Set<Module> excluded) {
+		assertEquals(view.nodes(), Sets.difference(graph.nodes(), excluded));
+		assertEquals(view.nodes().size(), modules.size() - excluded.size());
+		int edgeCount = 0;
+		for (Module module : modules) {
+			Set<Module> successors = Sets.difference(graph.successors(module), excluded);
+			Set<Module> predecessors = Sets.difference(graph.predecessors(module), excluded);
+			assertEquals(view.successors(module), successors, module.toString());
+			assertEquals(view.predecessors(module), predecessors, module.toString());
+			assertEquals(view.successors(module).size(), successors.size(), module.toString());
+			assertEquals(view.hasSucccessors(module), !successors.isEmpty(), module.toString());
+			assertEquals(view.hasPredecessors(module), !predecessors.isEmpty(), module.toString());
+			for (GraphEdge<Module> edge : view.successorEdges(module)) {
+				assertFalse(excluded.contains(edge.source()) || excluded.contains(edge.target()));
+				edgeCount++;
+			}
+			assertEquals(view.predecessorEdges(module).size(), excluded.contains(module) ? 0 : predecessors.size());
+		}
+		assertEquals(view.edges().size(), edgeCount);
+	}
+
+	@Test
+	public void testView() {
+		Set<Module> excluded = ImmutableSet.of(find("A"), find("F"));
+		Set<Module> nested = ImmutableSet.of(find("A"), find("F"), find("C"));
+		for (DirectedGraph<Module, GraphEdge<Module>> base : ImmutableList.of(graph, compactGraph)) {
+			DirectedGraphView<Module, GraphEdge<Module>> view = (DirectedGraphView<Module, GraphEdge<Module>>) base.withoutExcluded(excluded);
+			assertView(view, excluded);
+			assertView(view.withoutExcluded(ImmutableSet.of(find("C"))), nested);
+			// the nested view does not change the parent
+			assertView(view, excluded);
+
+			assertTrue(view.exclude(find("C")));
+			assertFalse(view.exclude(find("C")));
+			assertView(view, nested);
+			assertTrue(view.include(find("C")));
+			assertView(view, excluded);
+		}
+	}
+
+	@Test
+	public void testSameAsDefault() {
+		assertEquals(compactGraph.nodes(), graph.nodes());
+		assertEquals(compactGraph.edges(), graph.edges());
+
+		for (Module module : modules) {
+			assertEquals(compactGraph.successors(module), graph.successors(module), module.toString());
+			assertEquals(compactGraph.predecessors(module), graph.predecessors(module), module.toString());
+			assertEquals(compactGraph.successorEdges(module), graph.successorEdges(module), module.toString());
+			assertEquals(compactGraph.predecessorEdges(module), graph.predecessorEdges(module), module.toString());
+			assertEquals(compactGraph.hasSucccessors(module), graph.hasSucccessors(module), module.toString());
+			assertEquals(compactGraph.hasPredecessors(module), graph.hasPredecessors(module), module.toString());
+		}
+	}
+
+	@Test
+	public void testParallelEdges() {
+		Module e = findModule("E");
+		Module f = findModule("F");
+
+		// F uses both E and X provided by E
+		assertEquals(2, compactGraph.successorEdges(e).size());
+		assertEquals(2, compactGraph.predecessorEdges(f).size());
+		assertEquals(ImmutableSet.of(e), compactGraph.predecessors(f));
+
+		GraphIndex<Module> index = compactGraph.getIndex();
+		assertEquals(1, index.inDegree(index.indexOf(f)));
+		assertEquals(index.indexOf(e), index.predecessor(index.indexOf(f), 0));
+	}
+
+	@Test
+	public void testParallelConstruction() throws UnsatisfiedDependencyException {
+		Set<Module> modules = Sets.newLinkedHashSet(this.modules);
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			Module.Builder builder = Module.builder("m", i).provides("k" + i % 3000);
+			for (int j = 0; j < 3; j++) {
+				builder.usesOptionally("k" + random.nextInt(3000));
+			}
+			modules.add(builder.uses("A").buildModule());
+		}
+
+		DirectedGraph<Module, GraphEdge<Module>> sequential = DependencyGraphFactory.newGraph(modules, Module.adapterFunction);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			DirectedGraph<Module, GraphEdge<Module>> parallel = DependencyGraphFactory.newGraph(modules, Module.adapterFunction, pool);
+			assertEquals(parallel.nodes(), sequential.nodes());
+			for (Module module : modules) {
+				assertEquals(parallel.successors(module), sequential.successors(module), module.toString());
+				assertEquals(parallel.predecessors(module), sequential.predecessors(module), module.toString());
+				assertEquals(parallel.successorEdges(module).size(), parallel.successors(module).size());
+			}
+			assertEquals(ImmutableSet.copyOf(parallel.edges()), ImmutableSet.copyOf(parallel.edges()));
+
+			modules.add(Module.builder("unsatisfied").uses("missing").buildModule());
+			try {
+				DependencyGraphFactory.newGraph(modules, Module.adapterFunction, pool);
+				fail("The dependency is missing");
+			} catch (UnsatisfiedDependencyException e) {
+				assertEquals("missing", e.getDependency());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelInstance() throws UnsatisfiedDependencyException, CyclicGraphException {
+		Set<Module> modules = Sets.newLinkedHashSet(this.modules);
+		for (int i = 0; i < 10000; i++) {
+			Module.Builder builder = Module.builder("m", i).provides("k" + i).uses("A");
+			if (i > 0) {
+				builder.uses("k" + (i - 1) / 2);
+			}
+			builder.executionPriority(i % 7);
+			modules.add(builder.buildModule());
+		}
+		final AtomicInteger adaptations = new AtomicInteger();
+		final Set<Thread> threads = Sets.newConcurrentHashSet();
+		Function<Module, IDependencyDescriptor<String>> countingFunction = new Function<Module, IDependencyDescriptor<String>>() {
+			
+			@Override
+			public IDependencyDescriptor<String> apply(Module input) {
+				adaptations.incrementAndGet();
+				threads.add(Thread.currentThread());
+				return input.getCollector();
+			}
+		};
+
+		IDependencyGraph<Module> sequential = DependencyGraphFactory.newInstance(modules, Module.adapterFunction);
+		IDependencyGraph<Module> parallel = DependencyGraphFactory.newInstance(modules, countingFunction, 
+				DependencyGraphOption.PARALLEL_CONSTRUCTION);
+		// the scatter phase adapts each descriptor once on the pool, the priorities are not adapted again
+		assertEquals(modules.size(), adaptations.get());
+		assertFalse(threads.contains(Thread.currentThread()));
+		assertEquals(parallel.getModuleRankings(), sequential.getModuleRankings());
+	}
+
+	@Test
+	public void testUnknownVertex() {
+		Module unknown = Module.builder("unknown").buildModule();
+		assertTrue(compactGraph.successors(unknown).isEmpty());
+		assertTrue(compactGraph.predecessorEdges(unknown).isEmpty());
+		assertFalse(compactGraph.hasPredecessors(unknown));
+		assertFalse(compactGraph.nodes().contains(unknown));
+		assertFalse(compactGraph.edges().contains(EvaluatedGraphEdge.edge(unknown, findModule("A"))));
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testInvalidEdge() {
+		Module unknown = Module.builder("unknown").buildModule();
+		CompactDirectedGraph.<Module, GraphEdge<Module>>builder()
+			.nodes(modules)
+			.edges(ImmutableSet.of(EvaluatedGraphEdge.edge(unknown, findModule("A"))))
+			.build();
+	}
+
+	private Module findModule(String name) {
+		for (Module module : modules) {
+			if (module.getName().equals(name)) {
+				return module;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+}
@@ -2,22 +2,31 @@ package com.github.nill14.parsers.graph;
 
 import static org.testng.Assert.*;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 
 import com.github.nill14.parsers.dependency.IDependencyGraph;
 import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
 import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
 import com.github.nill14.parsers.dependency.impl.DependencyTreePrinter;
+import com.github.nill14.parsers.dependency.impl.GraphExporter;
 import com.github.nill14.parsers.dependency.impl.ModuleRankingsPrinter;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class DependencyTreePrinterTest {
 	
@@ -115,4 +124,100 @@ public class DependencyTreePrinterTest {
 	public void testModuleRankings() {
 		new ModuleRankingsPrinter<>(dependencyGraph).toInfoLog(log);
 	}	
+
+	@Test
+	public void testDependencyTreeToAppendable() throws IOException {
+		StringBuilder tree = new StringBuilder();
+		new DependencyTreePrinter<>(dependencyGraph, true).toAppendable(tree);
+		assertEquals(tree.toString(), lines(
+				"Dependency tree",
+				"D (0)",
+				"L (0)",
+				" \\- K (1)",
+				"G (0)",
+				" \\- F (1)",
+				"    \\- E (2)",
+				"H (0)",
+				" \\- C (1)",
+				"    +- A (3)",
+				"    |  \\- M (4)",
+				"    +- J (3)",
+				"    \\- B (2)",
+				"       +- A (3)",
+				"       |  \\- M (4)",
+				"       \\- J (3)",
+				"I (0)",
+				" \\- C (1)",
+				"    \\- ... (skipped 4 other dependencies)"));
+		
+		StringBuilder rankings = new StringBuilder();
+		new ModuleRankingsPrinter<>(dependencyGraph).toAppendable(rankings);
+		assertTrue(rankings.toString().startsWith(lines("Module Rankings", "* M (4)", "* J (3)", "  A (3)")));
+	}
+	
+	@Test
+	public void testDeepDependencyTree() throws IOException, CyclicGraphException, UnsatisfiedDependencyException {
+		IDependencyGraph<Module> chain = newChain(20000);
+		final AtomicInteger lines = new AtomicInteger();
+		new DependencyTreePrinter<>(chain, false).toAppendable(new Appendable() {
+			
+			@Override
+			public Appendable append(CharSequence csq) {
+				if (csq.equals(System.lineSeparator())) {
+					lines.incrementAndGet();
+				}
+				return this;
+			}
+			
+			@Override
+			public Appendable append(CharSequence csq, int start, int end) {
+				return append(csq.subSequence(start, end));
+			}
+			
+			@Override
+			public Appendable append(char c) {
+				return this;
+			}
+		});
+		assertEquals(20001, lines.get());
+	}
+	
+	@Test
+	public void testExport() throws Exception {
+		StringBuilder dot = new StringBuilder();
+		new GraphExporter<>(dependencyGraph).toDot(dot);
+		assertTrue(dot.toString().startsWith(lines("digraph dependencies {", "  n0 [label=\"M (4)\"];")));
+		assertEquals(graph.edges().size() + modules.size() + 2, dot.toString().split(System.lineSeparator()).length);
+		
+		IDependencyGraph<Module> chain = newChain(1000);
+		StringBuilder graphML = new StringBuilder();
+		new GraphExporter<>(chain, new Function<Module, String>() {
+			@Override
+			public String apply(Module input) {
+				return "<" + input + " & \"quoted\">";
+			}
+		}).toGraphML(graphML);
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new InputSource(new StringReader(graphML.toString())));
+		assertEquals(1000, document.getElementsByTagName("node").getLength());
+		assertEquals(999, document.getElementsByTagName("edge").getLength());
+		assertEquals("<m-0 & \"quoted\">", document.getElementsByTagName("data").item(0).getTextContent());
+	}
+	
+	private static IDependencyGraph<Module> newChain(int length) throws CyclicGraphException, UnsatisfiedDependencyException {
+		Set<Module> chain = Sets.newLinkedHashSet();
+		chain.add(Module.builder("m", 0).buildModule());
+		for (int i = 1; i < length; i++) {
+			chain.add(Module.builder("m", i).uses("m-" + (i - 1)).buildModule());
+		}
+		return DependencyGraphFactory.newInstance(chain, Module.adapterFunction);
+	}
+	
+	private static String lines(String... lines) {
+		StringBuilder b = new StringBuilder();
+		for (String line : lines) {
+			b.append(line).append(System.lineSeparator());
+		}
+		return b.toString();
+	}
 }
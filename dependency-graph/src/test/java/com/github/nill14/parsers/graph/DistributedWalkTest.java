@@ -0,0 +1,184 @@
+package com.github.nill14.parsers.graph;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.github.nill14.parsers.dependency.impl.RemoteModuleException;
+import com.github.nill14.parsers.dependency.impl.WalkCoordinator;
+import com.github.nill14.parsers.dependency.impl.WalkWorker;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class DistributedWalkTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private Set<Module> modules;
+	private IDependencyGraph<Module> dependencyGraph;
+	private WalkCoordinator<Module> coordinator;
+
+	/**
+	 * A binary tree, m-0 is the root. Each process builds its own instances.
+	 */
+	private static Set<Module> newModules() {
+		Set<Module> modules = Sets.newLinkedHashSet();
+		modules.add(Module.builder("m", 0).buildModule());
+		for (int i = 1; i < 60; i++) {
+			modules.add(Module.builder("m", i).uses("m-" + (i - 1) / 2).buildModule());
+		}
+		return modules;
+	}
+
+	@BeforeMethod
+	public void init() throws UnsatisfiedDependencyException, CyclicGraphException, IOException {
+		modules = newModules();
+		dependencyGraph = DependencyGraphFactory.newInstance(modules, Module.adapterFunction);
+		coordinator = new WalkCoordinator<>(dependencyGraph, Functions.toStringFunction(), 0);
+	}
+
+	@AfterMethod
+	public void close() {
+		coordinator.close();
+	}
+
+	private Future<?> startWorker(final IConsumer<Module> moduleConsumer) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				new WalkWorker<>(newModules(), Functions.toStringFunction(), moduleConsumer, 2)
+					.run("localhost", coordinator.getPort());
+				return null;
+			}
+		});
+	}
+
+	@Test(timeOut=10000)
+	public void testWalk() throws ExecutionException, InterruptedException {
+		final Queue<String> executionOrder = new ConcurrentLinkedQueue<>();
+		List<Future<?>> workers = Lists.newArrayList();
+		for (int i = 0; i < 3; i++) {
+			workers.add(startWorker(new IConsumer<Module>() {
+				@Override
+				public void process(Module module) throws Exception {
+					Thread.sleep(2);
+					executionOrder.add(module.getName());
+				}
+			}));
+		}
+
+		coordinator.walk();
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+
+		List<String> order = ImmutableList.copyOf(executionOrder);
+		assertEquals(modules.size(), order.size());
+		Map<String, Module> byName = Maps.newHashMap();
+		for (Module module : modules) {
+			byName.put(module.getName(), module);
+		}
+		for (int i = 0; i < order.size(); i++) {
+			for (Module dependency : dependencyGraph.getDirectDependencies(byName.get(order.get(i)))) {
+				assertTrue(order.subList(0, i).contains(dependency.getName()), dependency + " before " + order.get(i));
+			}
+		}
+	}
+
+	@Test(timeOut=10000)
+	public void testFailure() throws InterruptedException {
+		final AtomicInteger attempts = new AtomicInteger();
+		coordinator.setMaxAttempts(2);
+		for (int i = 0; i < 2; i++) {
+			startWorker(new IConsumer<Module>() {
+				@Override
+				public void process(Module module) throws Exception {
+					if (module.getName().equals("m-5")) {
+						attempts.incrementAndGet();
+						throw new IOException("test checked exception");
+					}
+				}
+			});
+		}
+
+		try {
+			coordinator.walk();
+			fail("The walk should fail");
+		} catch (ExecutionException e) {
+			RemoteModuleException cause = (RemoteModuleException) e.getCause();
+			assertEquals("m-5", cause.getModuleKey());
+			assertTrue(cause.getMessage().contains("test checked exception"));
+		}
+		assertEquals(2, attempts.get());
+	}
+
+	/**
+	 * The first worker process dies on m-3, the lease is reassigned to the second worker process.
+	 */
+	@Test(timeOut=60000)
+	public void testWorkerProcesses() throws Exception {
+		Future<?> walk = executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws ExecutionException {
+				coordinator.walk();
+				return null;
+			}
+		});
+
+		Process crashing = startWorkerProcess("m-3");
+		assertEquals(1, crashing.waitFor());
+		assertFalse(walk.isDone());
+
+		Process worker = startWorkerProcess("none");
+		walk.get();
+		assertEquals(0, worker.waitFor());
+	}
+
+	private Process startWorkerProcess(String crashOn) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				DistributedWalkTest.class.getName(), String.valueOf(coordinator.getPort()), crashOn)
+			.inheritIO()
+			.start();
+	}
+
+	/**
+	 * The worker process
+	 * @param args the coordinator port and the module to crash on
+	 */
+	public static void main(String[] args) throws IOException {
+		final String crashOn = args[1];
+		new WalkWorker<>(newModules(), Functions.toStringFunction(), new IConsumer<Module>() {
+			@Override
+			public void process(Module module) throws Exception {
+				if (module.getName().equals(crashOn)) {
+					Runtime.getRuntime().halt(1);
+				}
+			}
+		}, 2).run("localhost", Integer.parseInt(args[0]));
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.github.nill14.parsers.graph;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.github.nill14.parsers.dependency.IConsumer;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Compiled by the jfr profile only, skipped when the runtime has no recorder.
+ */
+public class FlightRecorderEventsTest {
+
+	private static final Logger log = LoggerFactory.getLogger(FlightRecorderEventsTest.class);
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	private Set<Module> modules;
+	private Module moduleC;
+	private Module moduleJ;
+
+	private final IConsumer<Module> consumer = new IConsumer<Module>() {
+
+		@Override
+		public void process(Module module) throws Exception {
+		}
+	};
+
+	@BeforeClass
+	public void init() {
+		if (!FlightRecorder.isAvailable()) {
+			throw new SkipException("Java Flight Recorder is not available");
+		}
+		moduleC = Module.builder("C").uses("A").uses("B").buildModule();
+		moduleJ = Module.builder("J").provides("A").buildModule();
+		modules = ImmutableSet.of(
+			Module.builder("A").provides("A").uses("M").buildModule(),
+			Module.builder("B").uses("A").buildModule(),
+			moduleC,
+			Module.builder("D").buildModule(),
+			Module.builder("H").uses("C").buildModule(),
+			moduleJ,
+			Module.builder("M").buildModule()
+		);
+	}
+
+	@Test
+	public void testFlightRecorderEvents() throws Exception {
+		int closureSize;
+		File file = File.createTempFile("walk", ".jfr");
+		try {
+			// the same settings as jcmd JFR.start
+			try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+				recording.start();
+				IWalkableDependencyGraph<Module> dependencyGraph = DependencyGraphFactory.newInstance(modules, Module.adapterFunction);
+				dependencyGraph.walkGraph(executor, consumer, 2);
+
+				// A, B, C, J and M
+				closureSize = dependencyGraph.getAllDependencies(moduleC).size() + 1;
+				dependencyGraph.walkGraph(executor, consumer, 2, ImmutableSet.of(moduleC));
+
+				try {
+					dependencyGraph.walkGraph(executor, new IConsumer<Module>() {
+
+						@Override
+						public void process(Module module) throws Exception {
+							if (module == moduleJ) {
+								throw new IllegalStateException();
+							}
+						}
+					}, 2);
+					fail();
+				} catch (ExecutionException e) {
+					// expected
+				}
+				recording.stop();
+				recording.dump(file.toPath());
+			}
+
+			Map<String, Integer> counts = Maps.newHashMap();
+			Set<String> phases = Sets.newHashSet();
+			Set<Integer> walkSizes = Sets.newHashSet();
+			boolean failed = false;
+			for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+				String name = event.getEventType().getName();
+				if (name.startsWith("com.github.nill14.parsers.")) {
+					Integer count = counts.get(name);
+					counts.put(name, count == null ? 1 : count + 1);
+				}
+				if (name.equals("com.github.nill14.parsers.ConstructionPhase")) {
+					phases.add(event.getString("phase"));
+					assertEquals(modules.size(), event.getInt("moduleCount"));
+				}
+				if (name.equals("com.github.nill14.parsers.Walk")) {
+					walkSizes.add(event.getInt("moduleCount"));
+					if (event.getInt("moduleCount") == closureSize) {
+						assertEquals(closureSize, event.getInt("finishedCount"));
+					}
+				}
+				if (name.equals("com.github.nill14.parsers.ModuleFinished") && event.getBoolean("failed")) {
+					assertEquals("J", event.getString("module"));
+					assertTrue(event.getString("failure").contains("IllegalStateException"));
+					failed = true;
+				}
+			}
+			log.info("{}", counts);
+			assertEquals(ImmutableSet.of("descriptor adaptation", "edge build", "longest path sort", "graph build"), phases);
+			assertEquals(Integer.valueOf(3), counts.get("com.github.nill14.parsers.Walk"));
+			assertEquals(ImmutableSet.of(modules.size(), closureSize), walkSizes);
+			// the first two walks are complete, some modules might be skipped after the failure of J in the last one
+			assertTrue(counts.get("com.github.nill14.parsers.ModuleReleased") > modules.size() + closureSize);
+			assertTrue(counts.get("com.github.nill14.parsers.ModuleStarted") > modules.size() + closureSize);
+			assertTrue(counts.get("com.github.nill14.parsers.ModuleFinished") > modules.size() + closureSize);
+			assertTrue(failed);
+		} finally {
+			file.delete();
+		}
+	}
+
+}
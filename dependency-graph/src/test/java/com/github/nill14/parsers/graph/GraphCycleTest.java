@@ -3,6 +3,7 @@ import static org.testng.Assert.*;
 
 import java.util.Collection;
 import java.util.Deque;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -13,10 +14,16 @@ import org.testng.annotations.Test;
 import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
 import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
 import com.github.nill14.parsers.graph.utils.GraphCycleDetector;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.EvaluatedGraphEdge;
 import com.google.common.base.Function;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
 
 public class GraphCycleTest {
 	
@@ -122,5 +129,40 @@ public class GraphCycleTest {
 		log.info("{}", cycles);
 		assertEquals(3, cycles.size());
 	}
+	
+	@Test
+	public void testShortestCycles() {
+		Collection<List<Module>> cycles = new GraphCycleDetector<>(graph).getShortestCycles();
+		log.info("{}", cycles);
+		assertEquals(3, cycles.size());
+		
+		for (List<Module> cycle : cycles) {
+			assertEquals(cycle.get(0), cycle.get(cycle.size() - 1));
+			for (int i = 1; i < cycle.size(); i++) {
+				assertTrue(graph.successors(cycle.get(i - 1)).contains(cycle.get(i)), cycle.toString());
+			}
+		}
+		assertTrue(cycles.contains(ImmutableList.of(findModule("K"), findModule("L"), findModule("K")))
+				|| cycles.contains(ImmutableList.of(findModule("L"), findModule("K"), findModule("L"))));
+	}
+	
+	@Test
+	public void testDeepCycle() {
+		int length = 200000;
+		ImmutableSet.Builder<GraphEdge<Integer>> edges = ImmutableSet.builder();
+		for (int i = 1; i < length; i++) {
+			edges.add(EvaluatedGraphEdge.edge(i - 1, i));
+		}
+		edges.add(EvaluatedGraphEdge.edge(length - 1, 0));
+		DirectedGraph<Integer, GraphEdge<Integer>> chain = CompactDirectedGraph.<Integer, GraphEdge<Integer>>builder()
+				.nodes(ContiguousSet.create(Range.closedOpen(0, length), DiscreteDomain.integers()))
+				.edges(edges.build())
+				.build();
+		
+		GraphCycleDetector<Integer> detector = new GraphCycleDetector<>(chain);
+		assertEquals(1, detector.getNontrivialCycles().size());
+		assertEquals(length, detector.getNontrivialCycles().iterator().next().size());
+		assertEquals(length + 1, detector.getShortestCycles().iterator().next().size());
+	}
 
 }
@@ -6,23 +6,37 @@ import java.util.Collection;
 import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
+import com.github.nill14.parsers.dependency.IConsumer;
 import com.github.nill14.parsers.dependency.IDependencyGraph;
 import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
 import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
 import com.github.nill14.parsers.graph.utils.GraphCycleDetector;
 import com.github.nill14.parsers.graph.utils.LongestPathTopoSorter;
+import com.github.nill14.parsers.graph.utils.ReachabilityIndex;
+import com.github.nill14.parsers.graph.utils.TransitiveReduction;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
+import com.github.nill14.parsers.graph.impl.EvaluatedGraphEdge;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
 import com.google.common.base.Function;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class GraphOrderTest {
 	
@@ -136,6 +150,115 @@ public class GraphOrderTest {
 		assertTopoOrder(Lists.newArrayList(topologicalOrdering.keySet()));
 	}
 
+	@Test
+	public void testDeepChain() throws CyclicGraphException {
+		int length = 200000;
+		DirectedGraph<Integer, GraphEdge<Integer>> chain = buildChain(length, false);
+		
+		LinkedHashMap<Integer, Integer> rankings = new LongestPathTopoSorter<>(chain).getLongestPathMap();
+		assertEquals(length, rankings.size());
+		assertEquals(Integer.valueOf(0), rankings.keySet().iterator().next());
+		assertEquals(Integer.valueOf(length - 1), rankings.get(0));
+	}
+	
+	@Test(expectedExceptions = CyclicGraphException.class)
+	public void testDeepCycle() throws CyclicGraphException {
+		new LongestPathTopoSorter<>(buildChain(200000, true)).getTopologicalOrdering();
+	}
+	
+	@Test
+	public void testEdgeCosts() throws CyclicGraphException {
+		// the depth range is too wide for a counting sort
+		LinkedHashMap<Integer, Integer> rankings = new LongestPathTopoSorter<>(buildChain(100, false), 
+				new Function<GraphEdge<Integer>, Integer>() {
+			@Override
+			public Integer apply(GraphEdge<Integer> input) {
+				return 100000;
+			}
+		}).getLongestPathMap();
+		
+		assertEquals(ImmutableList.copyOf(rankings.keySet()), ContiguousSet.create(Range.closedOpen(0, 100), DiscreteDomain.integers()).asList());
+		assertEquals(Integer.valueOf(99 * 100000), rankings.get(0));
+	}
+	
+	@Test
+	public void testTransitiveReduction() throws CyclicGraphException {
+		DirectedGraph<Module, GraphEdge<Module>> reduced = TransitiveReduction.reduce(graph);
+		assertEquals(graph.nodes(), reduced.nodes());
+		assertEquals(ImmutableSet.of(findModule("B")), reduced.predecessors(findModule("C")));
+		assertTrue(reduced.edges().size() < graph.edges().size());
+		assertTrue(graph.edges().containsAll(reduced.edges()));
+		
+		// more than a single block of ancestors
+		Random random = new Random(42);
+		ImmutableSet.Builder<GraphEdge<Integer>> edges = ImmutableSet.builder();
+		for (int i = 1; i < 5000; i++) {
+			for (int j = 0; j < 3; j++) {
+				edges.add(EvaluatedGraphEdge.edge(random.nextInt(i), i));
+			}
+			if (i > 4200) {
+				edges.add(EvaluatedGraphEdge.edge(4100 + random.nextInt(i - 4100), i));
+			}
+		}
+		DirectedGraph<Integer, GraphEdge<Integer>> dag = CompactDirectedGraph.<Integer, GraphEdge<Integer>>builder()
+				.nodes(ContiguousSet.create(Range.closedOpen(0, 5000), DiscreteDomain.integers()))
+				.edges(edges.build())
+				.build();
+		
+		List<Integer> order = ContiguousSet.create(Range.closedOpen(0, 5000), DiscreteDomain.integers()).asList();
+		ReachabilityIndex<Integer> expected = new ReachabilityIndex<>(GraphIndex.of(dag, order));
+		GraphIndex<Integer> reducedIndex = GraphIndex.of(TransitiveReduction.reduce(dag), order);
+		ReachabilityIndex<Integer> actual = new ReachabilityIndex<>(reducedIndex);
+		assertTrue(reducedIndex.edgeCount() < GraphIndex.of(dag).edgeCount());
+		for (int id = 0; id < order.size(); id++) {
+			assertEquals(actual.ancestors(id), expected.ancestors(id), "ancestors of " + id);
+			// no predecessor is implied by another one
+			for (int i = 0; i < reducedIndex.inDegree(id); i++) {
+				for (int j = 0; j < reducedIndex.inDegree(id); j++) {
+					assertFalse(actual.isAncestor(reducedIndex.predecessor(id, i), reducedIndex.predecessor(id, j)));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testTransitiveReductionOption() throws CyclicGraphException, UnsatisfiedDependencyException, ExecutionException {
+		IDependencyGraph<Module> reduced = DependencyGraphFactory.newInstance(modules, Module.adapterFunction, 
+				DependencyGraphOption.TRANSITIVE_REDUCTION);
+		
+		// the declared dependencies are kept
+		assertEquals(reduced.getGraph().edges().size(), graph.edges().size());
+		assertEquals(reduced.getDirectDependencies(findModule("C")), ImmutableSet.of(findModule("A"), findModule("B"), findModule("J")));
+		assertEquals(reduced.getTopologicalOrder(), dependencyBuilder.getTopologicalOrder());
+		for (Module module : modules) {
+			assertEquals(ImmutableSet.copyOf(reduced.getAllDependencies(module)), 
+					ImmutableSet.copyOf(dependencyBuilder.getAllDependencies(module)), module.toString());
+		}
+		
+		final List<Module> executionOrder = Lists.newArrayList();
+		reduced.walkGraph(MoreExecutors.newDirectExecutorService(), new IConsumer<Module>() {
+			@Override
+			public void process(Module module) throws Exception {
+				executionOrder.add(module);
+			}
+		}, 1);
+		assertTopoOrder(executionOrder);
+	}
+	
+	private DirectedGraph<Integer, GraphEdge<Integer>> buildChain(int length, boolean cyclic) {
+		ImmutableSet.Builder<GraphEdge<Integer>> edges = ImmutableSet.builder();
+		for (int i = 1; i < length; i++) {
+			edges.add(EvaluatedGraphEdge.edge(i - 1, i));
+		}
+		if (cyclic) {
+			edges.add(EvaluatedGraphEdge.edge(length - 1, 0));
+		}
+		return CompactDirectedGraph.<Integer, GraphEdge<Integer>>builder()
+				.nodes(ContiguousSet.create(Range.closedOpen(0, length), DiscreteDomain.integers()))
+				.edges(edges.build())
+				.build();
+	}
+
 	private void assertTopoOrder(List<Module> topologicalOrdering) {
 		log.info("{}", topologicalOrdering);
 		assertEquals(modules.size(), topologicalOrdering.size());
@@ -1,13 +1,18 @@
 package com.github.nill14.parsers.graph;
 import static org.testng.Assert.*;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -15,19 +20,34 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.github.nill14.parsers.dependency.ICachingConsumer;
 import com.github.nill14.parsers.dependency.IConsumer;
-import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
 import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
 import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
 import com.github.nill14.parsers.dependency.impl.DependencyTreePrinter;
+import com.github.nill14.parsers.dependency.impl.DurationProfile;
+import com.github.nill14.parsers.dependency.impl.GraphSnapshot;
+import com.github.nill14.parsers.dependency.impl.IncrementalWalk;
 import com.github.nill14.parsers.dependency.impl.ModuleRankingsPrinter;
+import com.github.nill14.parsers.dependency.impl.WalkRecorder;
+import com.github.nill14.parsers.dependency.impl.WalkReport;
+import com.github.nill14.parsers.graph.impl.GraphIndex;
+import com.github.nill14.parsers.graph.utils.ChainContraction;
+import com.github.nill14.parsers.graph.utils.GraphWalker2;
 import com.github.nill14.parsers.graph.utils.GraphWalker3;
+import com.github.nill14.parsers.graph.utils.GraphWalker5;
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class GraphWalkerTest {
 	
@@ -35,7 +55,7 @@ public class GraphWalkerTest {
 	private final ExecutorService executor = Executors.newFixedThreadPool(8);
 	private DirectedGraph<Module, GraphEdge<Module>> graph;
 	private Set<Module> modules;
-	private IDependencyGraph<Module> dependencyGraph;
+	private IWalkableDependencyGraph<Module> dependencyGraph;
 	private ImmutableMap<String, Module> moduleIndex;
 
 
@@ -153,6 +173,624 @@ public class GraphWalkerTest {
 		assertTopoOrder(Lists.newArrayList(executionOrder));
 	}
 	
+	@Test(timeOut=1000)
+	public void testWalkPerThread() throws InterruptedException, ExecutionException {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final Queue<Module> executionOrder = new ConcurrentLinkedQueue<>();
+		
+		dependencyGraph.walkGraphPerThread(new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				int current = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				Thread.sleep(20);
+				executionOrder.add(module);
+				running.decrementAndGet();
+			}
+		}, 3);
+		
+		assertTrue(maxRunning.get() <= 3, "max running " + maxRunning.get());
+		assertTopoOrder(Lists.newArrayList(executionOrder));
+	}
+	
+	@Test(timeOut=1000)
+	public void testWalkBatched() throws InterruptedException, ExecutionException {
+		final Queue<Module> executionOrder = new ConcurrentLinkedQueue<>();
+		
+		dependencyGraph.walkGraphBatched(executor, new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				executionOrder.add(module);
+			}
+		}, 3);
+		
+		assertTopoOrder(Lists.newArrayList(executionOrder));
+		
+		final Module moduleA = findModule("A");
+		final Set<Module> processed = Sets.newConcurrentHashSet();
+		try {
+			dependencyGraph.walkGraphBatched(executor, new IConsumer<Module>() {
+				
+				@Override
+				public void process(Module module) throws Exception {
+					processed.add(module);
+					if (module == moduleA) {
+						throw new IllegalStateException();
+					}
+				}
+			}, 3);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		for (Module module : modules) {
+			if (dependencyGraph.getAllDependencies(module).contains(moduleA)) {
+				assertFalse(processed.contains(module), module.toString());
+			}
+		}
+	}
+	
+	@Test(timeOut=2000)
+	public void testWalkReport() throws InterruptedException, ExecutionException {
+		final Module moduleC = findModule("C");
+		WalkRecorder<Module> recorder = new WalkRecorder<>();
+
+		dependencyGraph.walkGraph(executor, new IConsumer<Module>() {
+
+			@Override
+			public void process(Module module) throws Exception {
+				Thread.sleep(module == moduleC ? 100 : 1);
+			}
+		}, 4, recorder);
+
+		WalkReport<Module> report = recorder.getReport();
+		report.toInfoLog(log);
+		assertTrue(report.getMakespanNanos() >= 100_000_000L);
+		assertTrue(report.getUtilisation() > 0 && report.getUtilisation() <= 1);
+		assertEquals(ImmutableList.of(moduleC), report.getTopBlockers(1));
+
+		List<Module> criticalPath = report.getCriticalPath();
+		assertTrue(criticalPath.contains(moduleC));
+		assertTrue(dependencyGraph.getDirectDependencies(criticalPath.get(0)).isEmpty());
+		for (int i = 1; i < criticalPath.size(); i++) {
+			Module module = criticalPath.get(i);
+			assertTrue(dependencyGraph.getDirectDependencies(module).contains(criticalPath.get(i - 1)));
+			assertTrue(report.getReadyNanos(module) <= report.getStartNanos(module));
+			assertEquals(report.getQueueWaitNanos(module), report.getStartNanos(module) - report.getReadyNanos(module));
+		}
+		for (Module module : modules) {
+			assertTrue(report.getReleaseNanos(module) <= report.getStartNanos(module));
+			assertTrue(report.getStartNanos(module) < report.getEndNanos(module));
+		}
+	}
+
+	@Test
+	public void testChainContraction() throws InterruptedException {
+		ChainContraction<Module> chains = ChainContraction.of(GraphIndex.of(graph, topoList));
+		assertTrue(chains.isContracted());
+		// M -> A, E -> F -> G and K -> L
+		assertEquals(modules.size() - 4, chains.getContractedIndex().size());
+		
+		GraphIndex<Module> contracted = chains.getContractedIndex();
+		int chainE = contracted.indexOf(findModule("E"));
+		assertEquals(3, chains.chainLength(chainE));
+		assertEquals(findModule("F"), chains.chainMember(chainE, 1));
+		assertEquals(findModule("G"), chains.chainMember(chainE, 2));
+		assertEquals(-1, contracted.indexOf(findModule("A")));
+		int chainM = contracted.indexOf(findModule("M"));
+		assertEquals(ImmutableSet.of(findModule("B"), findModule("C")), contracted.successorSet(chainM));
+		
+		final Module moduleF = findModule("F");
+		final Set<Module> processed = Sets.newConcurrentHashSet();
+		WalkRecorder<Module> recorder = new WalkRecorder<>();
+		try {
+			dependencyGraph.walkGraph(executor, new IConsumer<Module>() {
+				
+				@Override
+				public void process(Module module) throws Exception {
+					processed.add(module);
+					if (module == moduleF) {
+						throw new IllegalStateException();
+					}
+				}
+			}, 2, recorder);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		
+		// the rest of the chain is skipped, the chain members report their own events
+		assertFalse(processed.contains(findModule("G")));
+		WalkReport<Module> report = recorder.getReport();
+		assertTrue(report.getReleaseNanos(moduleF) >= report.getEndNanos(findModule("E")));
+		assertTrue(report.getEndNanos(moduleF) >= 0);
+		assertEquals(-1, report.getStartNanos(findModule("G")));
+	}
+
+	@Test
+	public void testDurationProfile() throws ExecutionException, IOException {
+		final Module moduleD = findModule("D");
+		DurationProfile<Module> profile = DurationProfile.create();
+		assertEquals(-1, profile.getDurationNanos(moduleD));
+
+		profile.walkGraph(dependencyGraph, executor, new IConsumer<Module>() {
+
+			@Override
+			public void process(Module module) throws Exception {
+				Thread.sleep(module == moduleD ? 50 : 1);
+			}
+		}, 4);
+
+		for (Module module : modules) {
+			assertTrue(profile.getDurationNanos(module) > 0);
+		}
+		assertTrue(profile.getDurationNanos(moduleD) >= 50_000_000L);
+
+		// the unconnected module D has the lowest static ranking but the highest profiled one
+		IWalkableDependencyGraph<Module> rankedGraph = profile.rank(dependencyGraph);
+		assertEquals(moduleD, rankedGraph.getTopologicalOrder().get(0));
+		// D alone is the critical path
+		assertEquals(100000, (int) rankedGraph.getModuleRankings().get(moduleD));
+
+		File file = File.createTempFile("profile", ".bin");
+		try {
+			profile.save(file);
+			DurationProfile<Module> loaded = DurationProfile.create();
+			loaded.load(file);
+			for (Module module : modules) {
+				assertEquals(profile.getDurationNanos(module), loaded.getDurationNanos(module));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testDurationProfileCriticalPath() throws Exception {
+		// a chain of 600 modules of 1 ms each is shorter than a single module of 1 s
+		Set<Module> modules = Sets.newHashSet();
+		DurationProfile<Module> profile = DurationProfile.create();
+		Module module = Module.builder("X", 1).buildModule();
+		Module head = module;
+		modules.add(module);
+		profile.record(module, 1_000_000L);
+		for (int i = 2; i <= 600; i++) {
+			module = Module.builder("X", i).uses(module.getName()).buildModule();
+			modules.add(module);
+			profile.record(module, 1_000_000L);
+		}
+		Module slowModule = Module.builder("Y").buildModule();
+		modules.add(slowModule);
+		profile.record(slowModule, 1_000_000_000L);
+		
+		IWalkableDependencyGraph<Module> rankedGraph = profile.rank(
+				DependencyGraphFactory.newInstance(modules, Module.adapterFunction));
+		Map<Module, Integer> rankings = rankedGraph.getModuleRankings();
+		assertEquals(slowModule, rankedGraph.getTopologicalOrder().get(0));
+		assertEquals(100000, (int) rankings.get(slowModule));
+		// the rankings are the sums of the durations, the short modules do not round to 0
+		assertEquals(100, (int) rankings.get(module));
+		assertEquals(60000, (int) rankings.get(head));
+		List<Module> order = rankedGraph.getTopologicalOrder();
+		assertTrue(order.indexOf(head) < order.indexOf(module));
+	}
+
+	@Test(timeOut=5000)
+	public void testWalkResourceLimits() throws ExecutionException, UnsatisfiedDependencyException, CyclicGraphException {
+		Set<Module> modules = Sets.newHashSet();
+		for (int i = 0; i < 8; i++) {
+			modules.add(Module.builder("db", i).usesResource("database").buildModule());
+			modules.add(Module.builder("cpu", i).buildModule());
+		}
+		modules.add(Module.builder("both").usesResource("database").usesResource("disk").uses("db-0").buildModule());
+		IWalkableDependencyGraph<Module> dependencyGraph = DependencyGraphFactory.newInstance(modules, Module.adapterFunction);
+		assertResourceLimits(dependencyGraph);
+		// the ranked graph keeps the resource tags
+		assertResourceLimits(DurationProfile.<Module>create().rank(dependencyGraph));
+	}
+	
+	private void assertResourceLimits(IWalkableDependencyGraph<Module> dependencyGraph) throws ExecutionException {
+		final AtomicInteger database = new AtomicInteger();
+		final AtomicInteger maxDatabase = new AtomicInteger();
+		final AtomicInteger maxCpu = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger count = new AtomicInteger();
+		
+		dependencyGraph.walkGraph(executor, new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				boolean usesDatabase = !module.getPrefix().equals("cpu");
+				if (usesDatabase) {
+					maxDatabase.set(Math.max(maxDatabase.get(), database.incrementAndGet()));
+				}
+				maxCpu.set(Math.max(maxCpu.get(), running.incrementAndGet()));
+				Thread.sleep(10);
+				running.decrementAndGet();
+				if (usesDatabase) {
+					database.decrementAndGet();
+				}
+				count.incrementAndGet();
+			}
+		}, 4, ImmutableMap.of("database", 1));
+		
+		assertEquals(dependencyGraph.getModules().size(), count.get());
+		assertEquals(1, maxDatabase.get());
+		assertTrue(maxCpu.get() > 1);
+	}
+	
+	@Test(timeOut=1000)
+	public void testPartialWalk() throws ExecutionException {
+		final Queue<Module> executionOrder = new ConcurrentLinkedQueue<>();
+		IConsumer<Module> moduleConsumer = new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				executionOrder.add(module);
+			}
+		};
+		
+		Module moduleC = findModule("C");
+		Set<Module> expected = Sets.newHashSet(dependencyGraph.getAllDependencies(moduleC));
+		expected.add(moduleC);
+		assertEquals(expected, ImmutableSet.of(moduleC, findModule("A"), findModule("B"), findModule("J"), findModule("M")));
+		
+		dependencyGraph.walkGraph(executor, moduleConsumer, 2, ImmutableSet.of(moduleC));
+		assertEquals(expected.size(), executionOrder.size());
+		assertEquals(expected, ImmutableSet.copyOf(executionOrder));
+		List<Module> walked = Lists.newArrayList(executionOrder);
+		for (Module module : walked) {
+			for (Module dependency : dependencyGraph.getDirectDependencies(module)) {
+				assertTrue(walked.indexOf(dependency) < walked.indexOf(module), dependency + " before " + module);
+			}
+		}
+		
+		executionOrder.clear();
+		dependencyGraph.iterateTopoOrder(moduleConsumer, ImmutableSet.of(moduleC, findModule("G")));
+		List<Module> expectedOrder = Lists.newArrayList();
+		for (Module module : topoList) {
+			if (expected.contains(module) || module == findModule("G") 
+					|| dependencyGraph.getAllDependencies(findModule("G")).contains(module)) {
+				expectedOrder.add(module);
+			}
+		}
+		assertEquals(Lists.newArrayList(executionOrder), expectedOrder);
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testPartialWalkUnknownTarget() throws ExecutionException {
+		dependencyGraph.iterateTopoOrder(new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+			}
+		}, ImmutableSet.of(Module.builder("X").buildModule()));
+	}
+	
+	@Test
+	public void testIncrementalWalk() throws ExecutionException, IOException {
+		final Map<Module, String> fingerprints = Maps.newHashMap();
+		for (Module module : modules) {
+			fingerprints.put(module, "v1");
+		}
+		final Set<Module> processed = Sets.newConcurrentHashSet();
+		final Set<Module> restored = Sets.newConcurrentHashSet();
+		ICachingConsumer<Module> moduleConsumer = new ICachingConsumer<Module>() {
+			
+			@Override
+			public byte[] process(Module module) throws Exception {
+				processed.add(module);
+				return (module + fingerprints.get(module)).getBytes(StandardCharsets.UTF_8);
+			}
+			
+			@Override
+			public void restore(Module module, byte[] output) throws Exception {
+				assertEquals(module + fingerprints.get(module), new String(output, StandardCharsets.UTF_8));
+				restored.add(module);
+			}
+		};
+		
+		IncrementalWalk<Module> walk = new IncrementalWalk<>(dependencyGraph, 
+				Functions.toStringFunction(), Functions.forMap(fingerprints));
+		walk.walkGraph(executor, moduleConsumer, 4);
+		assertEquals(modules, processed);
+		assertTrue(walk.getSkippedModules().isEmpty());
+		
+		// unchanged
+		processed.clear();
+		walk.walkGraph(executor, moduleConsumer, 4);
+		assertTrue(processed.isEmpty());
+		assertEquals(modules, restored);
+		
+		// the changed module and its dependants are processed, restored is their old output
+		Module moduleA = findModule("A");
+		fingerprints.put(moduleA, "v2");
+		restored.clear();
+		Set<Module> changed = Sets.newHashSet(moduleA);
+		for (Module module : modules) {
+			if (dependencyGraph.getAllDependencies(module).contains(moduleA)) {
+				changed.add(module);
+			}
+		}
+		assertTrue(changed.size() > 1);
+		walk.walkGraph(executor, moduleConsumer, 4);
+		assertEquals(changed, processed);
+		assertEquals(Sets.difference(modules, changed), walk.getSkippedModules());
+		
+		File file = File.createTempFile("cache", ".bin");
+		try {
+			walk.save(file);
+			IncrementalWalk<Module> loaded = new IncrementalWalk<>(dependencyGraph, 
+					Functions.toStringFunction(), Functions.forMap(fingerprints));
+			loaded.load(file);
+			processed.clear();
+			loaded.walkGraph(executor, moduleConsumer, 4);
+			assertTrue(processed.isEmpty());
+			assertEquals(modules, loaded.getSkippedModules());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testGraphSnapshot() throws ExecutionException, IOException {
+		Map<String, Module> byName = Maps.newHashMap();
+		for (Module module : modules) {
+			byName.put(module.toString(), module);
+		}
+		
+		long fingerprint = GraphSnapshot.fingerprint(modules, Module.adapterFunction, Functions.toStringFunction());
+		File file = File.createTempFile("graph", ".bin");
+		try {
+			GraphSnapshot.write(dependencyGraph, Functions.toStringFunction(), fingerprint, file);
+			IWalkableDependencyGraph<Module> loaded = GraphSnapshot.read(file, Functions.forMap(byName, null), fingerprint);
+			assertEquals(dependencyGraph.getModules(), loaded.getModules());
+			assertEquals(dependencyGraph.getTopologicalOrder(), loaded.getTopologicalOrder());
+			assertEquals(dependencyGraph.getModuleRankings(), loaded.getModuleRankings());
+			assertEquals(dependencyGraph.getGraph().edges().size(), loaded.getGraph().edges().size());
+			for (Module module : modules) {
+				assertEquals(dependencyGraph.getDirectDependencies(module), loaded.getDirectDependencies(module));
+				assertEquals(ImmutableSet.copyOf(dependencyGraph.getAllDependencies(module)), 
+						ImmutableSet.copyOf(loaded.getAllDependencies(module)));
+			}
+			
+			// a stale snapshot, a module is added or its descriptor changed
+			Set<Module> added = Sets.newHashSet(modules);
+			added.add(Module.builder("NEW").uses("A").buildModule());
+			Set<Module> changed = Sets.newHashSet(modules);
+			changed.remove(byName.get("A"));
+			changed.add(Module.builder("A").usesOptionally("X").buildModule());
+			for (Set<Module> current : ImmutableList.of(added, changed)) {
+				long currentFingerprint = GraphSnapshot.fingerprint(current, Module.adapterFunction, Functions.toStringFunction());
+				assertNotEquals(fingerprint, currentFingerprint);
+				try {
+					GraphSnapshot.read(file, Functions.forMap(byName, null), currentFingerprint);
+					fail("The modules have changed");
+				} catch (IOException e) {
+					assertTrue(e.getMessage().startsWith("Stale"));
+				}
+			}
+			assertEquals(fingerprint, GraphSnapshot.fingerprint(Lists.newArrayList(modules), 
+					Module.adapterFunction, Functions.toStringFunction()));
+			
+			byName.remove("A");
+			try {
+				GraphSnapshot.read(file, Functions.forMap(byName, null), fingerprint);
+				fail("Module A is unknown");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("unknown module"));
+			}
+			
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			bytes[bytes.length - 1] ^= 1;
+			Files.write(file.toPath(), bytes);
+			try {
+				GraphSnapshot.read(file, Functions.forMap(byName, null), fingerprint);
+				fail("The snapshot is corrupted");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Corrupted"));
+			}
+			
+			// the high byte of the module count, after magic, version, fingerprint and checksum
+			bytes[bytes.length - 1] ^= 1;
+			bytes[24] ^= 0x40;
+			Files.write(file.toPath(), bytes);
+			try {
+				GraphSnapshot.read(file, Functions.forMap(byName, null), fingerprint);
+				fail("The module count is corrupted");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Corrupted"));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test(timeOut=1000)
+	public void testWalkAsync() throws InterruptedException, ExecutionException {
+		final AtomicInteger count = new AtomicInteger();
+		final Queue<Module> executionOrder = new ConcurrentLinkedQueue<>();
+		
+		ListenableFuture<Void> future = dependencyGraph.walkGraphAsync(executor, new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				Thread.sleep(10);
+				count.incrementAndGet();
+				executionOrder.add(module);
+			}
+		});
+		
+		future.get();
+		assertEquals(modules.size(), count.get());
+		assertTopoOrder(Lists.newArrayList(executionOrder));
+	}
+	
+	@Test(timeOut=1000, expectedExceptions=IOException.class, expectedExceptionsMessageRegExp="test checked exception")
+	public void testWalkAsyncException() throws InterruptedException, IOException {
+		final AtomicInteger count = new AtomicInteger();
+		
+		ListenableFuture<Void> future = dependencyGraph.walkGraphAsync(executor, new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				Thread.sleep(10);
+				if (count.incrementAndGet() == 5) {
+					throw new IOException("test checked exception");
+				}
+			}
+		});
+		
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			assertTrue(count.get() < modules.size());
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else {
+				throw new RuntimeException("Unexpected", e);
+			}
+		}
+	}
+	
+	@Test(timeOut=5000)
+	public void testManyWalksAsync() throws InterruptedException, ExecutionException {
+		final AtomicInteger count = new AtomicInteger();
+		ExecutorService smallPool = Executors.newFixedThreadPool(2);
+		List<ListenableFuture<Void>> futures = Lists.newArrayList();
+		
+		for (int i = 0; i < 500; i++) {
+			futures.add(dependencyGraph.walkGraphAsync(smallPool, new IConsumer<Module>() {
+				
+				@Override
+				public void process(Module module) throws Exception {
+					count.incrementAndGet();
+				}
+			}, 2));
+		}
+		
+		Futures.allAsList(futures).get();
+		smallPool.shutdown();
+		assertEquals(500 * modules.size(), count.get());
+	}
+	
+	@Test(timeOut=20000)
+	public void testWalkAsyncDirectExecutor() throws Exception {
+		// the modules run in the dispatching thread, the stack must not grow with the chain
+		Set<Module> chain = Sets.newHashSet();
+		Module module = Module.builder("X", 1).buildModule();
+		chain.add(module);
+		for (int i = 2; i <= 20000; i++) {
+			module = Module.builder("X", i).uses(module.getName()).buildModule();
+			chain.add(module);
+		}
+		IWalkableDependencyGraph<Module> chainGraph = DependencyGraphFactory.newInstance(chain, Module.adapterFunction);
+		final AtomicInteger count = new AtomicInteger();
+		
+		chainGraph.walkGraphAsync(MoreExecutors.directExecutor(), new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				count.incrementAndGet();
+			}
+		}, 4).get();
+		assertEquals(chain.size(), count.get());
+	}
+	
+	@Test(timeOut=1000)
+	public void testWalkAsyncError() throws InterruptedException {
+		final AtomicInteger count = new AtomicInteger();
+		
+		ListenableFuture<Void> future = dependencyGraph.walkGraphAsync(executor, new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				if (count.incrementAndGet() == 5) {
+					throw new AssertionError("test error");
+				}
+			}
+		});
+		
+		try {
+			future.get();
+			fail("The walk must not complete when a module throws an error");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AssertionError);
+			assertTrue(count.get() < modules.size());
+		}
+	}
+	
+	@Test(timeOut=1000)
+	public void testWalkForkJoin() throws InterruptedException, ExecutionException {
+		final AtomicInteger count = new AtomicInteger();
+		final Queue<Module> executionOrder = new ConcurrentLinkedQueue<>();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		
+		dependencyGraph.walkGraphForkJoin(pool, new IConsumer<Module>() {
+			
+			@Override
+			public void process(Module module) throws Exception {
+				Thread.sleep(10);
+				count.incrementAndGet();
+				executionOrder.add(module);
+			}
+		});
+		
+		pool.shutdown();
+		assertEquals(modules.size(), count.get());
+		assertTopoOrder(Lists.newArrayList(executionOrder));
+	}
+	
+	@Test(timeOut=1000, expectedExceptions=IOException.class, expectedExceptionsMessageRegExp="test checked exception")
+	public void testWalkForkJoinException() throws InterruptedException, IOException {
+		final AtomicInteger count = new AtomicInteger();
+		
+		try {
+			dependencyGraph.walkGraphForkJoin(new ForkJoinPool(2), new IConsumer<Module>() {
+				
+				@Override
+				public void process(Module module) throws Exception {
+					if (count.incrementAndGet() == 5) {
+						throw new IOException("test checked exception");
+					}
+				}
+			});
+		} catch (ExecutionException e) {
+			assertTrue(count.get() < modules.size());
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else {
+				throw new RuntimeException("Unexpected", e);
+			}
+		}
+	}
+	
+	@Test(timeOut=1000)
+	public void testWalkForkJoinError() throws InterruptedException {
+		final AtomicInteger count = new AtomicInteger();
+		
+		try {
+			dependencyGraph.walkGraphForkJoin(new ForkJoinPool(2), new IConsumer<Module>() {
+				
+				@Override
+				public void process(Module module) throws Exception {
+					if (count.incrementAndGet() == 5) {
+						throw new AssertionError("test error");
+					}
+				}
+			});
+			fail("The walk must not complete when a module throws an error");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AssertionError);
+			assertTrue(count.get() < modules.size());
+		}
+	}
+	
 	@Test
 	public void testWalkSynchronously() throws InterruptedException, ExecutionException {
 		final AtomicInteger count = new AtomicInteger();
@@ -281,6 +919,40 @@ public class GraphWalkerTest {
 		Thread.sleep(100);
 		walker.releaseNext();
 	}
+
+	@Test(timeOut=1000)
+	public void testExhaustWalker5() throws InterruptedException, IOException, ExecutionException {
+		//there are five releaseable modules at the beginning
+		final GraphWalker5<Module> walker = new GraphWalker5<>(graph, topoList, 1000);
+		Set<Module> released = Sets.newHashSet();
+		for (int i = 0; i < 5; i++) {
+			released.add(walker.releaseNext());
+		}
+		assertEquals(released, ImmutableSet.of(findModule("D"), findModule("E"), findModule("J"), findModule("K"), findModule("M")));
+		
+		executor.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				walker.onComplete(findModule("K"));
+			}
+		});
+		assertEquals(walker.releaseNext(), findModule("L"));
+	}
+	
+	@Test(timeOut=1000)
+	public void testWalker2Failure() throws InterruptedException {
+		//there are five releaseable modules at the beginning, the failure is taken before the other four
+		GraphWalker2<Module> walker = new GraphWalker2<>(graph, topoList, dependencyGraph.getModuleRankings(), 1000);
+		try {
+			Module module = walker.releaseNext();
+			walker.onFailure(module, new IOException("test checked exception"));
+			walker.releaseNext();
+			fail("The walker must not release a module after a failure");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
 	
 
 	@Test(timeOut=2000)
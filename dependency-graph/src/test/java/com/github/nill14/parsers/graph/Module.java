@@ -56,18 +56,18 @@ public class Module {
 	
 	public static class Builder implements IDependencyDescriptorBuilder<String> {
 		
-		private final IDependencyDescriptorBuilder<String> builder;
+		private final DependencyDescriptor.Builder<String> builder;
 		private final String prefix;
 		private final int counter;
 		
 		public Builder(String name) {
 			this.prefix = name;
 			this.counter = 0;
-			builder = DependencyDescriptor.builder(name);
+			builder = new DependencyDescriptor.Builder<>(name);
 		}
 		
 		public Builder(String prefix, int counter) {
-			builder = DependencyDescriptor.builder(prefix + "-" + counter);
+			builder = new DependencyDescriptor.Builder<>(prefix + "-" + counter);
 			this.prefix = prefix;
 			this.counter = counter;
 		}
@@ -96,6 +96,11 @@ public class Module {
 			return this;
 		}
 		
+		public Builder usesResource(String resource) {
+			builder.usesResource(resource);
+			return this;
+		}
+		
 		@Override
 		public IDependencyDescriptor<String> build() {
 			return builder.build();
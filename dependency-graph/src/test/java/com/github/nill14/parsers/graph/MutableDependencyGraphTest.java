@@ -0,0 +1,193 @@
+package com.github.nill14.parsers.graph;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IMutableDependencyGraph;
+import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
+import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class MutableDependencyGraphTest {
+
+	private Module moduleA;
+	private Module moduleB;
+	private Module moduleC;
+	private Set<Module> modules;
+	private IMutableDependencyGraph<Module> mutableGraph;
+
+	@BeforeMethod
+	public void init() throws CyclicGraphException, UnsatisfiedDependencyException {
+		moduleA = Module.builder("A")
+				.buildModule();
+		moduleB = Module.builder("B")
+				.uses("A")
+				.usesOptionally("N")
+				.buildModule();
+		moduleC = Module.builder("C")
+				.uses("B")
+				.buildModule();
+
+		modules = Sets.newHashSet(moduleA, moduleB, moduleC);
+		mutableGraph = DependencyGraphFactory.newMutableInstance(modules, Module.adapterFunction);
+	}
+
+	@Test
+	public void testAddModule() throws CyclicGraphException, UnsatisfiedDependencyException {
+		IDependencyGraph<Module> snapshot = mutableGraph.snapshot();
+		assertEquals(ImmutableList.of(moduleA, moduleB, moduleC), snapshot.getTopologicalOrder());
+
+		// N is appended behind B which consumes it, the order must be repaired
+		Module moduleN = Module.builder("N").buildModule();
+		mutableGraph.addModule(moduleN);
+		modules.add(moduleN);
+
+		assertEquals(1, mutableGraph.getVersion());
+		assertNotSame(snapshot, mutableGraph.snapshot());
+		assertSame(mutableGraph.snapshot(), mutableGraph.snapshot());
+		assertConsistent();
+		assertEquals(ImmutableSet.of(moduleA, moduleN), snapshot(moduleB).getDirectDependencies(moduleB));
+		assertEquals(ImmutableSet.of(moduleA, moduleB, moduleN), snapshot(moduleC).getAllDependencies(moduleC));
+	}
+
+	@Test
+	public void testRemoveModule() throws CyclicGraphException, UnsatisfiedDependencyException {
+		Module moduleN = Module.builder("N").buildModule();
+		mutableGraph.addModule(moduleN);
+
+		mutableGraph.removeModule(moduleN);
+		assertEquals(2, mutableGraph.getVersion());
+		assertConsistent();
+		assertEquals(ImmutableSet.of(moduleA, moduleB), snapshot(moduleC).getAllDependencies(moduleC));
+	}
+
+	@Test
+	public void testRemoveRequired() throws CyclicGraphException, UnsatisfiedDependencyException {
+		try {
+			mutableGraph.removeModule(moduleA);
+			fail();
+		} catch (UnsatisfiedDependencyException e) {
+			assertSame(moduleB, e.getModule());
+			assertEquals("A", e.getDependency());
+		}
+		assertEquals(0, mutableGraph.getVersion());
+
+		// removed together with all the consumers
+		mutableGraph.removeModules(ImmutableList.of(moduleA, moduleB, moduleC));
+		assertTrue(mutableGraph.snapshot().getModules().isEmpty());
+	}
+
+	@Test
+	public void testAddUnsatisfied() throws CyclicGraphException {
+		Module moduleX = Module.builder("X").uses("Y").buildModule();
+		try {
+			mutableGraph.addModule(moduleX);
+			fail();
+		} catch (UnsatisfiedDependencyException e) {
+			assertSame(moduleX, e.getModule());
+		}
+		assertEquals(0, mutableGraph.getVersion());
+		assertConsistent();
+	}
+
+	@Test
+	public void testAddCycle() throws UnsatisfiedDependencyException {
+		// N depends on C while B depends on N
+		Module moduleN = Module.builder("N").uses("C").buildModule();
+		try {
+			mutableGraph.addModule(moduleN);
+			fail();
+		} catch (CyclicGraphException e) {
+			assertEquals(1, e.getGraphCycles().size());
+		}
+		assertEquals(0, mutableGraph.getVersion());
+		assertConsistent();
+	}
+
+	@Test
+	public void testRetainedDependencies() throws CyclicGraphException, UnsatisfiedDependencyException {
+		Module moduleD = Module.builder("D").uses("A").buildModule();
+		IDependencyGraph<Module> snapshot = mutableGraph.snapshot();
+		Set<Module> dependencies = snapshot.getAllDependencies(moduleC);
+		assertEquals(ImmutableSet.of(moduleA, moduleB), dependencies);
+
+		mutableGraph.addModule(moduleD);
+		modules.add(moduleD);
+		assertEquals(ImmutableSet.of(moduleA, moduleB), snapshot(moduleC).getAllDependencies(moduleC));
+		assertEquals(ImmutableSet.of(moduleA), snapshot(moduleD).getAllDependencies(moduleD));
+		assertEquals(dependencies, snapshot.getAllDependencies(moduleC));
+		assertConsistent();
+	}
+
+	@Test
+	public void testRandomChanges() throws CyclicGraphException, UnsatisfiedDependencyException {
+		Random random = new Random(42);
+		List<Module> pool = Lists.newArrayList();
+		for (int i = 0; i < 200; i++) {
+			Module.Builder builder = Module.builder("R", i);
+			for (int j = 0; i > 0 && j < 3; j++) {
+				builder.usesOptionally("R-" + random.nextInt(i));
+			}
+			builder.executionPriority(random.nextInt(3));
+			pool.add(builder.buildModule());
+		}
+
+		modules = Sets.newHashSet();
+		mutableGraph = DependencyGraphFactory.newMutableInstance(modules, Module.adapterFunction);
+		for (int round = 0; round < 100; round++) {
+			List<Module> batch = Lists.newArrayList();
+			for (int i = 0; i < 5; i++) {
+				batch.add(pool.get(random.nextInt(pool.size())));
+			}
+
+			if (random.nextInt(3) > 0) {
+				mutableGraph.addModules(batch);
+				modules.addAll(batch);
+			} else {
+				mutableGraph.removeModules(batch);
+				modules.removeAll(batch);
+			}
+			assertConsistent();
+		}
+	}
+
+	private IDependencyGraph<Module> snapshot(Module module) {
+		IDependencyGraph<Module> snapshot = mutableGraph.snapshot();
+		assertTrue(snapshot.getModules().contains(module));
+		return snapshot;
+	}
+
+	private void assertConsistent() {
+		IDependencyGraph<Module> snapshot = mutableGraph.snapshot();
+		IDependencyGraph<Module> expected;
+		try {
+			expected = DependencyGraphFactory.newInstance(modules, Module.adapterFunction);
+		} catch (UnsatisfiedDependencyException | CyclicGraphException e) {
+			throw new AssertionError(e);
+		}
+
+		assertEquals(snapshot.getModules(), modules);
+		Map<Module, Integer> rankings = snapshot.getModuleRankings();
+		assertEquals(rankings, expected.getModuleRankings());
+
+		List<Module> order = snapshot.getTopologicalOrder();
+		for (GraphEdge<Module> edge : snapshot.getGraph().edges()) {
+			assertTrue(order.indexOf(edge.source()) < order.indexOf(edge.target()), edge.source() + " -> " + edge.target());
+		}
+		for (Module module : modules) {
+			assertEquals(snapshot.getDirectDependencies(module), expected.getDirectDependencies(module));
+			assertEquals(ImmutableSet.copyOf(snapshot.getAllDependencies(module)), ImmutableSet.copyOf(expected.getAllDependencies(module)));
+		}
+	}
+}
@@ -15,15 +15,18 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.github.nill14.parsers.dependency.DependencyGraphOption;
 import com.github.nill14.parsers.dependency.IConsumer;
-import com.github.nill14.parsers.dependency.IDependencyGraph;
+import com.github.nill14.parsers.dependency.IWalkableDependencyGraph;
 import com.github.nill14.parsers.dependency.UnsatisfiedDependencyException;
 import com.github.nill14.parsers.dependency.impl.DependencyGraphFactory;
 import com.github.nill14.parsers.dependency.impl.ModuleRankingsPrinter;
+import com.github.nill14.parsers.graph.impl.CompactDirectedGraph;
 import com.github.nill14.parsers.graph.utils.GraphWalker1;
 import com.github.nill14.parsers.graph.utils.GraphWalker2;
 import com.github.nill14.parsers.graph.utils.GraphWalker3;
 import com.github.nill14.parsers.graph.utils.GraphWalker4;
+import com.github.nill14.parsers.graph.utils.GraphWalker5;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -34,7 +37,7 @@ public class PerformanceTest {
 	
 	private static final Logger log = LoggerFactory.getLogger(PerformanceTest.class);
 	private static Set<Module> modules;
-	private static IDependencyGraph<Module> dependencyGraph;
+	private static IWalkableDependencyGraph<Module> dependencyGraph;
 	private static DirectedGraph<Module, GraphEdge<Module>> graph;
 	private static ImmutableList<Module> topologicalOrder;
 	private static Map<Module, Integer> moduleRankings;
@@ -123,6 +126,11 @@ public class PerformanceTest {
 		DependencyGraphFactory.newGraph(modules, Module.adapterFunction);
 	}
 
+	@Test
+	public void createCompactGraph() {
+		CompactDirectedGraph.copyOf(graph);
+	}
+
 	@Test
 	public void testDependencies()  {
 
@@ -132,6 +140,24 @@ public class PerformanceTest {
 		assertEquals(999, dependencyGraph.getAllDependencies(moduleA).size());
 	}
 	
+	@Test
+	public void testDependenciesIndexed() throws UnsatisfiedDependencyException, CyclicGraphException  {
+		IWalkableDependencyGraph<Module> indexedGraph = DependencyGraphFactory.newInstance(
+				modules, Module.adapterFunction, DependencyGraphOption.REACHABILITY_INDEX);
+		
+		Module moduleA = index.get("A-1000");
+		Set<Module> dependencies = indexedGraph.getAllDependencies(moduleA);
+		assertEquals(999, dependencies.size());
+		assertTrue(dependencies.contains(index.get("A-1")));
+		assertFalse(dependencies.contains(index.get("B-1")));
+		assertFalse(dependencies.contains(moduleA));
+		assertEquals(dependencies, dependencyGraph.getAllDependencies(moduleA));
+		
+		for (Module module : modules) {
+			assertEquals(indexedGraph.getAllDependencies(module), dependencyGraph.getAllDependencies(module));
+		}
+	}
+	
 	
 	public GraphWalker<Module> createGraphWalker2() throws UnsatisfiedDependencyException, CyclicGraphException {
 		
@@ -146,6 +172,16 @@ public class PerformanceTest {
 		dependencyGraph.walkGraph(executor, consumer);
 	}
 	
+	@Test
+	public void testWalkBatched() throws InterruptedException, ExecutionException {
+		dependencyGraph.walkGraphBatched(executor, consumer, parallelism);
+	}
+	
+	@Test
+	public void testWalkPerThread() throws InterruptedException, ExecutionException {
+		dependencyGraph.walkGraphPerThread(consumer);
+	}
+	
 	@Test
 	public void testWalker2() throws InterruptedException, ExecutionException, UnsatisfiedDependencyException, CyclicGraphException {
 		final GraphWalker<Module> graphWalker = new GraphWalker2<>(graph, topologicalOrder, moduleRankings, parallelism);
@@ -196,6 +232,12 @@ public class PerformanceTest {
 		walk(graphWalker);
 	}
 
+	@Test
+	public void testWalker5() throws InterruptedException, ExecutionException {
+		final GraphWalker<Module> graphWalker = new GraphWalker5<>(graph, topologicalOrder, parallelism);
+		walk(graphWalker);
+	}
+
 	private void walk(final GraphWalker<Module> graphWalker)
 			throws ExecutionException {
 		